@@ -0,0 +1,375 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * PipelineCheck analyzes synthetic runs every way the analysis can be set up and checks
+ * that the fused {@link ProcessingPipeline} gives bit-identical results to running each
+ * stage over the whole series on its own, on and off the heap. Runs without baseline drift
+ * are also checked against {@link ReferenceAnalysis}, the analysis as it was written
+ * before it was split into stages.
+ *
+ * The outlier removal is also run with 1 to 10 passes in every mode, checking that the
+ * incremental passes, which stop once a pass changes nothing, give the same results as
+ * that many full passes. The spikes of the runs are large enough to hide smaller ones
+ * until they are removed, so later passes keep finding new outliers.
+ *
+ * It is not part of the application. Compile it alongside the sources and run it:
+ * 	javac -d out src/edu/ucr/nanosensorgrapher/*.java check/edu/ucr/nanosensorgrapher/*.java
+ * 	java -cp out edu.ucr.nanosensorgrapher.PipelineCheck [samples]
+ * The exit status is 1 if any result differs. If samples is passed in, a run of that many
+ * samples is also timed with and without fusing, and with incremental and full outlier
+ * passes.
+ */
+class PipelineCheck
+{
+	static final String CONCENTRATION = "NO2 1 2 5 10 20";
+	static final double OUTLIER_THRESHOLD = 2.5;
+	private static final int RUNS = 60;
+	private static final int SMOOTHING_PERIOD = 15;
+	private static final int TIMED_REPEATS = 5;
+
+	private static final DriftModel[] DRIFT_MODELS = { null, DriftModel.LINEAR,
+			DriftModel.POLYNOMIAL, DriftModel.PIECEWISE_LINEAR };
+	private static final SmoothingFilter[] SMOOTHING_FILTERS = { null,
+			SmoothingFilter.SIMPLE_MOVING_AVERAGE, SmoothingFilter.EXPONENTIAL_MOVING_AVERAGE,
+			SmoothingFilter.MEDIAN, SmoothingFilter.SAVITZKY_GOLAY };
+	private static final int[] OUTLIER_PASSES = { 1, 3 };
+	private static final int MAX_OUTLIER_PASSES = 10;
+
+	private int mChecks;
+	private int mFailures;
+	/** Outlier pass counts checked, and how many of them changed more than one less did **/
+	private int mPassCounts;
+	private int mCascades;
+
+	public static void main(String[] args) {
+		PipelineCheck check = new PipelineCheck();
+		for (int run = 0; run < RUNS; ++run) {
+			SensorData data = createRun(new Random(run), 1 + run % 4, run % 3 == 0);
+			check.checkRun(run, data);
+			check.checkOutlierPasses(run, data);
+		}
+		System.out.println(check.mChecks + " checks, " + check.mFailures + " failed");
+		System.out.println(check.mCascades + " of " + check.mPassCounts +
+				" outlier pass counts changed more than one pass less did");
+		if (args.length > 0) {
+			timeRun(Integer.parseInt(args[0]));
+		}
+		if (check.mFailures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Creates a run with a response to each exposure, drift, noise and bursts of spikes,
+	 * so outliers next to each other are only removed over several passes.
+	 *
+	 * @param interval The average time between samples in seconds.
+	 * @param quantized Whether the resistances are rounded to 0.1 ohms, so phases can have
+	 * 			a median absolute deviation of 0.
+	 */
+	static SensorData createRun(Random random, double interval, boolean quantized) {
+		String[] concentrations = CONCENTRATION.split(" ");
+		int exposures = concentrations.length - 1;
+		double duration = (SensorDataProcessor.DURATION_BASELINE + exposures *
+				(SensorDataProcessor.DURATION_EXPOSURE + SensorDataProcessor.DURATION_RECOVERY) +
+				SensorDataProcessor.DURATION_END) * 60;
+		double initialResistance = 1000 + 4000 * random.nextDouble();
+		double drift = (random.nextDouble() - 0.5) * 0.02;
+		double noise = 0.05 + 0.2 * random.nextDouble();
+		double tau = 1 + 3 * random.nextDouble();
+		SensorData data = new SensorData((int) (duration / interval) + 1);
+		int burst = 0;
+		double burstSize = 0;
+		for (double time = 0; time < duration; time += interval * (0.8 + 0.4 * random.nextDouble())) {
+			double minutes = time / 60;
+			double response = 0;
+			for (int i = 0; i < exposures; ++i) {
+				double start = PhaseIndex.getExposureStartTime(i);
+				double end = start + SensorDataProcessor.DURATION_EXPOSURE;
+				double amplitude = -2 * Double.parseDouble(concentrations[i + 1]);
+				if (minutes >= end) {
+					response += amplitude * (1 - Math.exp(-(end - start) / tau)) *
+							Math.exp(-(minutes - end) / tau);
+				} else if (minutes >= start) {
+					response += amplitude * (1 - Math.exp(-(minutes - start) / tau));
+				}
+			}
+			double percent = drift * minutes + response + noise * random.nextGaussian();
+			if (burst == 0 && random.nextDouble() < 0.005) {
+				burst = 1 + random.nextInt(4);
+				burstSize = (random.nextBoolean() ? 1 : -1) * (20 + 30 * random.nextDouble());
+			}
+			if (burst > 0) {
+				percent += burstSize * (0.8 + 0.4 * random.nextDouble());
+				burst--;
+			}
+			double resistance = initialResistance * (1 + percent / 100);
+			if (quantized) {
+				resistance = Math.round(resistance * 10) / 10.0;
+			}
+			data.add(time, resistance);
+		}
+		return data;
+	}
+
+	private void checkRun(int run, SensorData heapData) {
+		SensorData directData = new SensorData(heapData.size(), true);
+		directData.addAll(heapData);
+		try {
+			for (int mode = -1; mode < OutlierMode.values().length; ++mode) {
+				for (int p = 0; p < (mode < 0 ? 1 : OUTLIER_PASSES.length); ++p) {
+					for (int d = 0; d < DRIFT_MODELS.length; ++d) {
+						for (int s = 0; s < SMOOTHING_FILTERS.length; ++s) {
+							ProcessingOptions options = new ProcessingOptions();
+							if (mode >= 0) {
+								options.setOutlierMode(OutlierMode.values()[mode]);
+								options.setOutlierRemoval(OUTLIER_PASSES[p]);
+								options.setOutlierStdThreshold(OUTLIER_THRESHOLD);
+							}
+							if (DRIFT_MODELS[d] != null) {
+								options.setBaselineDrift(true);
+								options.setDriftModel(DRIFT_MODELS[d]);
+							}
+							if (SMOOTHING_FILTERS[s] != null) {
+								options.setSmoothingFilter(SMOOTHING_FILTERS[s]);
+								options.setSmoothDataPeriod(SMOOTHING_PERIOD);
+							}
+							options.setVectorizedKernels((run + d + s) % 2 == 0);
+							String label = "run " + run + " outliers " +
+									(mode < 0 ? "off" : options.getOutlierMode() + " x" +
+									options.getOutlierRemoval()) + ", drift " + DRIFT_MODELS[d] +
+									", smoothing " + SMOOTHING_FILTERS[s] + ", vectorized " +
+									options.getVectorizedKernels();
+							checkFused(label, heapData, options);
+							checkFused(label + ", direct", directData, options);
+							if (DRIFT_MODELS[d] == null) {
+								options.setVectorizedKernels(false);
+								checkReference(label, heapData, options);
+							}
+						}
+					}
+				}
+			}
+		} finally {
+			directData.free();
+		}
+	}
+
+	/**
+	 * Checks incremental outlier passes against the same number of full passes.
+	 */
+	private void checkOutlierPasses(int run, SensorData heapData) {
+		SensorData data = heapData;
+		if (run % 2 == 1) {
+			data = new SensorData(heapData.size(), true);
+			data.addAll(heapData);
+		}
+		try {
+			OutlierMode[] modes = OutlierMode.values();
+			for (int mode = 0; mode < modes.length; ++mode) {
+				ProcessingResult previous = null;
+				for (int passes = 1; passes <= MAX_OUTLIER_PASSES; ++passes) {
+					ProcessingOptions options = new ProcessingOptions();
+					options.setOutlierMode(modes[mode]);
+					options.setOutlierRemoval(passes);
+					options.setOutlierStdThreshold(OUTLIER_THRESHOLD);
+					ProcessingResult incremental = SensorDataProcessor.process(data,
+							CONCENTRATION, options);
+					options.setIncrementalOutliers(false);
+					ProcessingResult full = SensorDataProcessor.process(data, CONCENTRATION,
+							options);
+					check("run " + run + (data.isDirect() ? ", direct" : "") + ", " +
+							modes[mode] + " x" + passes + ", incremental vs full passes",
+							incremental, full);
+					full.free();
+					mPassCounts++;
+					if (previous != null) {
+						if (!equal(previous.getNormalizedResistances(),
+								incremental.getNormalizedResistances())) {
+							mCascades++;
+						}
+						previous.free();
+					}
+					previous = incremental;
+				}
+				previous.free();
+			}
+		} finally {
+			if (data != heapData) {
+				data.free();
+			}
+		}
+	}
+
+	private static boolean equal(DoubleSeries a, DoubleSeries b) {
+		if (a.size() != b.size()) {
+			return false;
+		}
+		for (int i = 0; i < a.size(); ++i) {
+			if (Double.compare(a.get(i), b.get(i)) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void checkFused(String label, SensorData data, ProcessingOptions options) {
+		options.setFusedPipeline(true);
+		ProcessingResult fused = SensorDataProcessor.process(data, CONCENTRATION, options);
+		options.setFusedPipeline(false);
+		ProcessingResult unfused = SensorDataProcessor.process(data, CONCENTRATION, options);
+		options.setFusedPipeline(true);
+		check(label + ", fused vs unfused", fused, unfused);
+		fused.free();
+		unfused.free();
+	}
+
+	private void checkReference(String label, SensorData data, ProcessingOptions options) {
+		ProcessingResult result = SensorDataProcessor.process(data, CONCENTRATION, options);
+		ReferenceAnalysis reference = new ReferenceAnalysis(data, CONCENTRATION, options);
+		label += ", scalar pipeline vs reference";
+		check(label + " R0", result.getInitialResistance(), reference.getInitialResistance());
+		check(label + " resistance axis", result.getResistanceAxis(),
+				reference.getResistanceAxis());
+		check(label + " normalized resistances", result.getNormalizedResistances(),
+				reference.getNormalizedResistances());
+		check(label + " max responses", result.getMaxResponses(),
+				reference.getMaxResponses());
+		result.free();
+	}
+
+	/**
+	 * Checks every value of two results is bit-identical.
+	 */
+	void check(String label, ProcessingResult a, ProcessingResult b) {
+		check(label + " time", a.getTime(), b.getTime());
+		check(label + " normalized resistances", a.getNormalizedResistances(),
+				b.getNormalizedResistances());
+		check(label + " max responses", a.getMaxResponses(), b.getMaxResponses());
+		check(label + " R0", a.getInitialResistance(), b.getInitialResistance());
+		check(label + " resistance axis", a.getResistanceAxis(), b.getResistanceAxis());
+		check(label + " min resistance", a.getMinResistance(), b.getMinResistance());
+		check(label + " max resistance", a.getMaxResistance(), b.getMaxResistance());
+		check(label + " concentration axis", a.getConcentrationAxis(),
+				b.getConcentrationAxis());
+		check(label + " time axis", a.getTimeAxis(), b.getTimeAxis());
+		if ((a.getBaselineDrift() == null) != (b.getBaselineDrift() == null)) {
+			fail(label + " baseline drift: only one was fitted");
+		} else if (a.getBaselineDrift() != null) {
+			check(label + " drift slope", a.getBaselineDrift().getSlope(),
+					b.getBaselineDrift().getSlope());
+			check(label + " drift intercept", a.getBaselineDrift().getIntercept(),
+					b.getBaselineDrift().getIntercept());
+			check(label + " drift r^2", a.getBaselineDrift().getRSquared(),
+					b.getBaselineDrift().getRSquared());
+		}
+		List<ExposureKinetics> kineticsA = a.getKinetics();
+		List<ExposureKinetics> kineticsB = b.getKinetics();
+		if (kineticsA.size() != kineticsB.size()) {
+			fail(label + " kinetics: " + kineticsA.size() + " vs " + kineticsB.size());
+			return;
+		}
+		for (int i = 0; i < kineticsA.size(); ++i) {
+			ExposureKinetics ka = kineticsA.get(i);
+			ExposureKinetics kb = kineticsB.get(i);
+			String kineticsLabel = label + " kinetics of exposure " + i;
+			check(kineticsLabel + " baseline", ka.getBaseline(), kb.getBaseline());
+			check(kineticsLabel + " noise", ka.getBaselineNoise(), kb.getBaselineNoise());
+			check(kineticsLabel + " response", ka.getResponse(), kb.getResponse());
+			check(kineticsLabel + " response time", ka.getResponseTime(), kb.getResponseTime());
+			check(kineticsLabel + " recovery time", ka.getRecoveryTime(), kb.getRecoveryTime());
+			check(kineticsLabel + " slope", ka.getInitialSlope(), kb.getInitialSlope());
+			check(kineticsLabel + " area", ka.getArea(), kb.getArea());
+		}
+	}
+
+	void check(String label, DoubleSeries a, DoubleSeries b) {
+		mChecks++;
+		if (a.size() != b.size()) {
+			fail(label + ": " + a.size() + " vs " + b.size() + " values");
+			return;
+		}
+		for (int i = 0; i < a.size(); ++i) {
+			if (Double.compare(a.get(i), b.get(i)) != 0) {
+				fail(label + ": " + a.get(i) + " vs " + b.get(i) + " at " + i);
+				return;
+			}
+		}
+	}
+
+	void check(String label, double a, double b) {
+		mChecks++;
+		if (Double.compare(a, b) != 0) {
+			fail(label + ": " + a + " vs " + b);
+		}
+	}
+
+	private void fail(String message) {
+		mFailures++;
+		System.out.println(message);
+	}
+
+	int getChecks() {
+		return mChecks;
+	}
+
+	int getFailures() {
+		return mFailures;
+	}
+
+	/**
+	 * Times the default analysis, and two outlier passes with drift and smoothing, of a run
+	 * with the passed in number of samples, with and without fusing.
+	 */
+	private static void timeRun(int samples) {
+		double duration = PhaseIndex.getExposureStartTime(CONCENTRATION.split(" ").length - 1) +
+				SensorDataProcessor.DURATION_END;
+		SensorData data = createRun(new Random(samples), duration * 60 / samples, false);
+		ProcessingOptions options = new ProcessingOptions();
+		timeRun("default", data, options);
+		options.setOutlierRemoval(2);
+		options.setOutlierStdThreshold(OUTLIER_THRESHOLD);
+		options.setBaselineDrift(true);
+		options.setSmoothDataPeriod(SMOOTHING_PERIOD);
+		timeRun("2 outlier passes, drift, smoothing", data, options);
+
+		OutlierMode[] modes = { OutlierMode.STANDARD_DEVIATION,
+				OutlierMode.MEDIAN_ABSOLUTE_DEVIATION };
+		for (int mode = 0; mode < modes.length; ++mode) {
+			options = new ProcessingOptions();
+			options.setOutlierMode(modes[mode]);
+			options.setOutlierRemoval(MAX_OUTLIER_PASSES);
+			options.setOutlierStdThreshold(OUTLIER_THRESHOLD);
+			for (int incremental = 1; incremental >= 0; --incremental) {
+				options.setIncrementalOutliers(incremental == 1);
+				long best = Long.MAX_VALUE;
+				for (int i = 0; i < TIMED_REPEATS; ++i) {
+					long start = System.nanoTime();
+					SensorDataProcessor.process(data, CONCENTRATION, options).free();
+					best = Math.min(best, System.nanoTime() - start);
+				}
+				System.out.println(MAX_OUTLIER_PASSES + " " + modes[mode] + " passes, " +
+						(incremental == 1 ? "incremental: " : "full: ") + data.size() +
+						" samples in " + best / 1000000 + " ms");
+			}
+		}
+	}
+
+	private static void timeRun(String label, SensorData data, ProcessingOptions options) {
+		for (int fused = 1; fused >= 0; --fused) {
+			options.setFusedPipeline(fused == 1);
+			long best = Long.MAX_VALUE;
+			for (int i = 0; i < TIMED_REPEATS; ++i) {
+				long start = System.nanoTime();
+				SensorDataProcessor.process(data, CONCENTRATION, options).free();
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			System.out.println(label + (fused == 1 ? ", fused: " : ", unfused: ") +
+					data.size() + " samples in " + best / 1000000 + " ms");
+		}
+		options.setFusedPipeline(true);
+	}
+}
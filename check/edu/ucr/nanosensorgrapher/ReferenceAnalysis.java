@@ -0,0 +1,264 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.Arrays;
+
+/**
+ * ReferenceAnalysis is the analysis as {@link SensorDataProcessor} ran it before it was
+ * split into {@link ProcessingStage}s: every step is its own loop over the whole series,
+ * in the order normalize, outlier passes, smoothing, then the max responses and the
+ * resistance axis. Only {@link PipelineCheck} uses it. Baseline drift has been refitted
+ * since, so it isn't covered here.
+ *
+ * The loops are kept as they were, including their order of floating point operations,
+ * so the pipeline has to match them bit for bit. The median filter is the exception: the
+ * sliding heaps it used are replaced by sorting each window, which gives the same values.
+ */
+class ReferenceAnalysis
+{
+	private static final int RESYNC_INTERVAL = 256;
+
+	private final double[] mTime;
+	private final double[] mNormalizedResistances;
+	private final double[] mMaxResponses;
+	private final PhaseIndex mPhaseIndex;
+	private double mInitialResistance;
+	private double mResistanceAxis;
+	private double[] mScratch = new double[0];
+
+	public ReferenceAnalysis(SensorData sensorData, String concentration,
+			ProcessingOptions options) {
+		int size = sensorData.size();
+		mTime = new double[size];
+		mNormalizedResistances = new double[size];
+		String[] concentrations = concentration.split(" ");
+		mMaxResponses = new double[concentrations.length - 1];
+
+		double numInitialResistanceValues = 0;
+		for (int i = 0; i < size; ++i) {
+			double timeMin = sensorData.getTime(i) / 60.0;
+			mTime[i] = timeMin;
+			if (timeMin > SensorDataProcessor.DURATION_RESISTANCE &&
+					timeMin < SensorDataProcessor.DURATION_BASELINE) {
+				mInitialResistance += sensorData.getResistance(i);
+				numInitialResistanceValues++;
+			}
+		}
+		mInitialResistance /= numInitialResistanceValues;
+		for (int i = 0; i < size; ++i) {
+			double resistance = sensorData.getResistance(i);
+			mNormalizedResistances[i] = (resistance - mInitialResistance) /
+					mInitialResistance * 100;
+		}
+		mPhaseIndex = new PhaseIndex(DoubleSeries.wrap(mTime, size), mMaxResponses.length);
+
+		for (int i = 0; i < options.getOutlierRemoval(); ++i) {
+			if (options.getOutlierMode() == OutlierMode.HAMPEL) {
+				HampelFilter.apply(DoubleSeries.wrap(mNormalizedResistances, size),
+						options.getHampelWindow(), options.getOutlierStdThreshold());
+			} else {
+				for (int phase = 0; phase < mPhaseIndex.getPhaseCount(); ++phase) {
+					removePeriodOutliers(mPhaseIndex.getStart(phase), mPhaseIndex.getEnd(phase),
+							options.getOutlierMode(), options.getOutlierStdThreshold());
+				}
+			}
+		}
+		int period = options.getSmoothDataPeriod();
+		if (period > 1 && size > 0) {
+			switch (options.getSmoothingFilter()) {
+			case SIMPLE_MOVING_AVERAGE:
+				simpleMovingAverage(mNormalizedResistances, period);
+				break;
+			case EXPONENTIAL_MOVING_AVERAGE:
+				exponentialMovingAverage(mNormalizedResistances, period);
+				break;
+			case MEDIAN:
+				median(mNormalizedResistances, period / 2);
+				break;
+			case SAVITZKY_GOLAY:
+				savitzkyGolay(mNormalizedResistances, period / 2);
+				break;
+			}
+		}
+		calculateAxisValues();
+	}
+
+	public double getInitialResistance() {
+		return mInitialResistance;
+	}
+
+	public double getResistanceAxis() {
+		return mResistanceAxis;
+	}
+
+	public DoubleSeries getNormalizedResistances() {
+		return DoubleSeries.wrap(mNormalizedResistances, mNormalizedResistances.length);
+	}
+
+	public DoubleSeries getMaxResponses() {
+		return DoubleSeries.wrap(mMaxResponses, mMaxResponses.length);
+	}
+
+	private void removePeriodOutliers(int startIndex, int stopIndex, OutlierMode mode,
+			double stdThreshold) {
+		int size = stopIndex - startIndex;
+		if (size < 2) {
+			return;
+		}
+		if (mScratch.length < size) {
+			mScratch = new double[size];
+		}
+		System.arraycopy(mNormalizedResistances, startIndex, mScratch, 0, size);
+		double periodMedian = MedianSelector.select(mScratch, 0, size, size / 2 - 1);
+		double periodStd;
+		if (mode == OutlierMode.MEDIAN_ABSOLUTE_DEVIATION) {
+			for (int i = 0; i < size; ++i) {
+				mScratch[i] = Math.abs(mNormalizedResistances[startIndex + i] - periodMedian);
+			}
+			periodStd = MedianSelector.select(mScratch, 0, size, size / 2 - 1) *
+					SensorDataProcessor.MAD_TO_STD;
+			if (periodStd == 0) {
+				return;
+			}
+		} else {
+			double periodVariance = 0;
+			for (int i = 0; i < size; ++i) {
+				periodVariance += Math.pow(mNormalizedResistances[startIndex + i] - periodMedian, 2);
+			}
+			periodVariance /= (size - 1);
+			periodStd = Math.sqrt(periodVariance);
+		}
+		for (int i = startIndex; i < stopIndex && i < mNormalizedResistances.length - 1; ++i) {
+			double zScore = Math.abs((mNormalizedResistances[i] - periodMedian) / periodStd);
+			if (zScore > stdThreshold) {
+				mNormalizedResistances[i] = i > 0 ? mNormalizedResistances[i - 1] :
+						mNormalizedResistances[i + 1];
+			}
+		}
+	}
+
+	private void calculateAxisValues() {
+		for (int phase = 0; phase < mPhaseIndex.getPhaseCount(); ++phase) {
+			int exposure = mPhaseIndex.getExposure(phase);
+			double periodMax = exposure >= 0 ? mMaxResponses[exposure] : 0;
+			for (int i = mPhaseIndex.getStart(phase); i < mPhaseIndex.getEnd(phase); ++i) {
+				double normalizedResistance = mNormalizedResistances[i];
+				if (Math.abs(mResistanceAxis) < Math.abs(normalizedResistance)) {
+					mResistanceAxis = normalizedResistance;
+				}
+				if (exposure >= 0 && Math.abs(periodMax) < Math.abs(normalizedResistance)) {
+					periodMax = normalizedResistance;
+				}
+			}
+			if (exposure >= 0) {
+				mMaxResponses[exposure] = periodMax;
+			}
+		}
+	}
+
+	private static void simpleMovingAverage(double[] values, int period) {
+		double[] window = new double[period];
+		int resyncInterval = Math.max(RESYNC_INTERVAL, period);
+		double sum = 0;
+		for (int i = 0; i < values.length; ++i) {
+			double value = values[i];
+			int slot = i % period;
+			sum += value - window[slot];
+			window[slot] = value;
+			if (i >= period - 1) {
+				if (i % resyncInterval == 0) {
+					sum = 0;
+					for (int j = 0; j < period; ++j) {
+						sum += window[j];
+					}
+				}
+				values[i] = sum / period;
+			}
+		}
+	}
+
+	private static void exponentialMovingAverage(double[] values, int period) {
+		double alpha = 2.0 / (period + 1);
+		double average = values[0];
+		for (int i = 1; i < values.length; ++i) {
+			average += alpha * (values[i] - average);
+			values[i] = average;
+		}
+	}
+
+	private static void median(double[] values, int halfWidth) {
+		double[] original = values.clone();
+		double[] window = new double[2 * halfWidth + 1];
+		for (int i = 0; i < values.length; ++i) {
+			int from = Math.max(0, i - halfWidth);
+			int to = Math.min(values.length, i + halfWidth + 1);
+			int count = to - from;
+			System.arraycopy(original, from, window, 0, count);
+			Arrays.sort(window, 0, count);
+			values[i] = count % 2 == 1 ? window[count / 2] :
+					(window[count / 2 - 1] + window[count / 2]) / 2;
+		}
+	}
+
+	private static void savitzkyGolay(double[] values, int halfWidth) {
+		int size = values.length;
+		int width = 2 * halfWidth + 1;
+		if (size < width) {
+			return;
+		}
+		double m = halfWidth;
+		double denominator = (2 * m - 1) * (2 * m + 1) * (2 * m + 3);
+		double weightA = 3 * (3 * m * m + 3 * m - 1) / denominator;
+		double weightB = 15 / denominator;
+
+		double[] window = new double[width];
+		System.arraycopy(values, 0, window, 0, width);
+		double[] sums = new double[3];
+		windowSums(window, halfWidth, halfWidth, sums);
+		double sum0 = sums[0];
+		double sum1 = sums[1];
+		double sum2 = sums[2];
+		double entryWeight = m + 1;
+		int resyncInterval = Math.max(RESYNC_INTERVAL, width);
+		for (int center = halfWidth; center < size - halfWidth; ++center) {
+			values[center] = weightA * sum0 - weightB * sum2;
+			int entering = center + halfWidth + 1;
+			if (entering == size) {
+				break;
+			}
+			int slot = (center - halfWidth) % width;
+			double leavingValue = window[slot];
+			double enteringValue = values[entering];
+			window[slot] = enteringValue;
+			if ((center + 1) % resyncInterval == 0) {
+				windowSums(window, halfWidth, center + 1, sums);
+				sum0 = sums[0];
+				sum1 = sums[1];
+				sum2 = sums[2];
+			} else {
+				double shifted0 = sum0 - leavingValue + enteringValue;
+				double shifted1 = sum1 + m * leavingValue + entryWeight * enteringValue;
+				double shifted2 = sum2 - m * m * leavingValue +
+						entryWeight * entryWeight * enteringValue;
+				sum2 = shifted2 - 2 * shifted1 + shifted0;
+				sum1 = shifted1 - shifted0;
+				sum0 = shifted0;
+			}
+		}
+	}
+
+	private static void windowSums(double[] window, int halfWidth, int center,
+			double[] sums) {
+		double sum0 = 0;
+		double sum1 = 0;
+		double sum2 = 0;
+		for (int j = -halfWidth; j <= halfWidth; ++j) {
+			double value = window[(center + j) % window.length];
+			sum0 += value;
+			sum1 += j * value;
+			sum2 += j * j * value;
+		}
+		sums[0] = sum0;
+		sums[1] = sum1;
+		sums[2] = sum2;
+	}
+}
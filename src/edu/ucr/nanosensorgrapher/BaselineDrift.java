@@ -0,0 +1,316 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * BaselineDrift fits the slow drift of a sensor's resistance over a run and removes it. The
+ * fit is built up one block of samples at a time, so it takes a single pass over the data
+ * and correcting the data afterwards takes one more.
+ *
+ * The straight line fit and the total sum of squares are kept as running means and
+ * co-moments (Welford's method) instead of raw sums of squares, which lose most of their
+ * precision to cancellation once a run has millions of samples. The polynomial and
+ * piecewise linear models accumulate the normal equations of their basis functions over
+ * the time scaled to [-1, 1], with Legendre polynomials as the polynomial basis, so the
+ * equations stay well conditioned, and are solved once all of the samples have been added.
+ */
+public class BaselineDrift
+{
+	/** Basis functions whose pivot falls below this fraction of their norm are dropped **/
+	private static final double SINGULAR_TOLERANCE = 1e-12;
+
+	private final DriftModel mModel;
+	/** Maps a time to [-1, 1] over the run **/
+	private final double mCenter;
+	private final double mScale;
+	/** Where the slope of a piecewise linear drift may change, in scaled time **/
+	private final double[] mKnots;
+	/** The number of basis functions, 0 for a straight line **/
+	private final int mBasisSize;
+	/** Lower triangle of the normal matrix and the right hand side of the basis fit **/
+	private final double[] mNormalMatrix;
+	private final double[] mNormalVector;
+	private final double[] mBasis;
+	private double[] mCoefficients;
+
+	private long mSampleCount;
+	private double mMeanTime;
+	private double mMeanValue;
+	/** Sums of the products of the deviations from the means **/
+	private double mTimeSquares;
+	private double mTimeValueProducts;
+	private double mValueSquares;
+	private double mResidualSquares;
+
+	private double mSlope;
+	private double mIntercept;
+	private boolean mVectorized;
+
+	/**
+	 * @param model The shape of the drift.
+	 * @param degree The degree of a {@link DriftModel#POLYNOMIAL} drift.
+	 * @param startTime The time of the first sample of the run in minutes.
+	 * @param endTime The time of the last sample of the run in minutes.
+	 * @param exposures The number of exposures in the run, whose start times are the knots
+	 * 			of a {@link DriftModel#PIECEWISE_LINEAR} drift.
+	 */
+	public BaselineDrift(DriftModel model, int degree, double startTime, double endTime,
+			int exposures) {
+		mModel = model;
+		mCenter = (startTime + endTime) / 2;
+		mScale = endTime > startTime ? 2 / (endTime - startTime) : 1;
+		int knotCount = 0;
+		if (model == DriftModel.PIECEWISE_LINEAR) {
+			while (knotCount < exposures &&
+					PhaseIndex.getExposureStartTime(knotCount) < endTime) {
+				knotCount++;
+			}
+		}
+		mKnots = new double[knotCount];
+		for (int i = 0; i < knotCount; ++i) {
+			mKnots[i] = scale(PhaseIndex.getExposureStartTime(i));
+		}
+		switch (model) {
+		case POLYNOMIAL:
+			mBasisSize = Math.max(degree, 1) + 1;
+			break;
+		case PIECEWISE_LINEAR:
+			mBasisSize = knotCount + 2;
+			break;
+		default:
+			mBasisSize = 0;
+			break;
+		}
+		mNormalMatrix = new double[mBasisSize * mBasisSize];
+		mNormalVector = new double[mBasisSize];
+		mBasis = new double[mBasisSize];
+	}
+
+	/**
+	 * Sets whether a straight line is subtracted with {@link NumericKernels}.
+	 */
+	public void setVectorized(boolean vectorized) {
+		mVectorized = vectorized;
+	}
+
+	private double scale(double time) {
+		return (time - mCenter) * mScale;
+	}
+
+	/**
+	 * Evaluates every basis function at the passed in scaled time.
+	 */
+	private void fillBasis(double u, double[] basis) {
+		basis[0] = 1;
+		basis[1] = u;
+		if (mModel == DriftModel.POLYNOMIAL) {
+			/** Bonnet's recursion for the Legendre polynomials **/
+			for (int k = 1; k + 1 < mBasisSize; ++k) {
+				basis[k + 1] = ((2 * k + 1) * u * basis[k] - k * basis[k - 1]) / (k + 1);
+			}
+		} else {
+			for (int k = 0; k < mKnots.length; ++k) {
+				basis[k + 2] = Math.max(u - mKnots[k], 0);
+			}
+		}
+	}
+
+	/**
+	 * Adds the values from index from (inclusive) to index to (exclusive) to the fit.
+	 */
+	public void add(DoubleSeries times, DoubleSeries values, int from, int to) {
+		long count = mSampleCount;
+		double meanTime = mMeanTime;
+		double meanValue = mMeanValue;
+		double timeSquares = mTimeSquares;
+		double timeValueProducts = mTimeValueProducts;
+		double valueSquares = mValueSquares;
+		int basisSize = mBasisSize;
+		double[] basis = mBasis;
+		double[] matrix = mNormalMatrix;
+		double[] vector = mNormalVector;
+		for (int i = from; i < to; ++i) {
+			double time = times.get(i);
+			double value = values.get(i);
+			count++;
+			double timeDelta = time - meanTime;
+			double valueDelta = value - meanValue;
+			meanTime += timeDelta / count;
+			meanValue += valueDelta / count;
+			double valueResidual = value - meanValue;
+			timeSquares += timeDelta * (time - meanTime);
+			timeValueProducts += timeDelta * valueResidual;
+			valueSquares += valueDelta * valueResidual;
+			if (basisSize > 0) {
+				fillBasis(scale(time), basis);
+				for (int j = 0; j < basisSize; ++j) {
+					double b = basis[j];
+					vector[j] += b * value;
+					int row = j * basisSize;
+					for (int k = 0; k <= j; ++k) {
+						matrix[row + k] += b * basis[k];
+					}
+				}
+			}
+		}
+		mSampleCount = count;
+		mMeanTime = meanTime;
+		mMeanValue = meanValue;
+		mTimeSquares = timeSquares;
+		mTimeValueProducts = timeValueProducts;
+		mValueSquares = valueSquares;
+	}
+
+	/**
+	 * Fits the drift to the values added so far.
+	 */
+	public void fit() {
+		mSlope = mTimeSquares > 0 ? mTimeValueProducts / mTimeSquares : 0;
+		mIntercept = mMeanValue - mSlope * mMeanTime;
+		mResidualSquares = 0;
+		if (mBasisSize > 0) {
+			mCoefficients = solve(mNormalMatrix.clone(), mNormalVector, mBasisSize);
+		}
+	}
+
+	/**
+	 * Solves the normal equations with a Cholesky decomposition. A basis function that is
+	 * a combination of the ones before it over the samples, such as the knot of an
+	 * exposure the run never recovered from, gets a coefficient of 0 instead of failing.
+	 *
+	 * @param matrix The lower triangle of the normal matrix, overwritten by its factor.
+	 */
+	private static double[] solve(double[] matrix, double[] vector, int size) {
+		boolean[] dropped = new boolean[size];
+		for (int j = 0; j < size; ++j) {
+			int row = j * size;
+			double pivot = matrix[row + j];
+			for (int k = 0; k < j; ++k) {
+				pivot -= matrix[row + k] * matrix[row + k];
+			}
+			if (!(pivot > SINGULAR_TOLERANCE * matrix[row + j])) {
+				dropped[j] = true;
+				for (int i = j; i < size; ++i) {
+					matrix[i * size + j] = 0;
+				}
+				continue;
+			}
+			pivot = Math.sqrt(pivot);
+			matrix[row + j] = pivot;
+			for (int i = j + 1; i < size; ++i) {
+				int other = i * size;
+				double sum = matrix[other + j];
+				for (int k = 0; k < j; ++k) {
+					sum -= matrix[other + k] * matrix[row + k];
+				}
+				matrix[other + j] = sum / pivot;
+			}
+		}
+
+		double[] solution = new double[size];
+		for (int j = 0; j < size; ++j) {
+			if (!dropped[j]) {
+				double sum = vector[j];
+				for (int k = 0; k < j; ++k) {
+					sum -= matrix[j * size + k] * solution[k];
+				}
+				solution[j] = sum / matrix[j * size + j];
+			}
+		}
+		for (int j = size - 1; j >= 0; --j) {
+			if (!dropped[j]) {
+				double sum = solution[j];
+				for (int i = j + 1; i < size; ++i) {
+					sum -= matrix[i * size + j] * solution[i];
+				}
+				solution[j] = sum / matrix[j * size + j];
+			}
+		}
+		return solution;
+	}
+
+	/**
+	 * Returns the fitted drift at the passed in time in minutes.
+	 */
+	public double evaluate(double time) {
+		if (mBasisSize == 0) {
+			return time * mSlope + mIntercept;
+		}
+		double[] basis = mBasis;
+		fillBasis(scale(time), basis);
+		double drift = 0;
+		for (int j = 0; j < mBasisSize; ++j) {
+			drift += mCoefficients[j] * basis[j];
+		}
+		return drift;
+	}
+
+	/**
+	 * Subtracts the fitted drift from the values from index from (inclusive) to index to
+	 * (exclusive) in place.
+	 *
+	 * @param fitted Whether the values were added to the fit, in which case what is left of
+	 * 			them counts towards {@link #getRSquared()}.
+	 */
+	public void subtract(DoubleSeries times, DoubleSeries values, int from, int to,
+			boolean fitted) {
+		double residualSquares = 0;
+		if (mBasisSize == 0 && mVectorized) {
+			residualSquares = NumericKernels.subtractLine(times, values, from, to, mSlope,
+					mIntercept);
+		} else if (mBasisSize == 0) {
+			double slope = mSlope;
+			double intercept = mIntercept;
+			for (int i = from; i < to; ++i) {
+				double residual = values.get(i) - (times.get(i) * slope + intercept);
+				values.set(i, residual);
+				residualSquares += residual * residual;
+			}
+		} else {
+			for (int i = from; i < to; ++i) {
+				double residual = values.get(i) - evaluate(times.get(i));
+				values.set(i, residual);
+				residualSquares += residual * residual;
+			}
+		}
+		if (fitted) {
+			mResidualSquares += residualSquares;
+		}
+	}
+
+	public DriftModel getModel() {
+		return mModel;
+	}
+
+	/**
+	 * @return The number of samples the drift was fitted to.
+	 */
+	public long getSampleCount() {
+		return mSampleCount;
+	}
+
+	/**
+	 * @return The slope of the straight line fit in normalized resistance per minute. For
+	 * 			the other models this is the overall trend of the drift.
+	 */
+	public double getSlope() {
+		return mSlope;
+	}
+
+	/**
+	 * @return The normalized resistance of the straight line fit at time 0.
+	 */
+	public double getIntercept() {
+		return mIntercept;
+	}
+
+	/**
+	 * @return The fraction of the variance of the fitted samples the drift explains, NaN if
+	 * 			they don't vary. Only known once the fitted samples have been corrected with
+	 * 			{@link #subtract(DoubleSeries, DoubleSeries, int, int, boolean)}.
+	 */
+	public double getRSquared() {
+		if (!(mValueSquares > 0)) {
+			return Double.NaN;
+		}
+		return 1 - mResidualSquares / mValueSquares;
+	}
+}
@@ -0,0 +1,193 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.List;
+
+/**
+ * CalibrationCurve fits the max response of a sensor against the concentration it was
+ * exposed to, from the result of a single run. Two curves are fitted by least squares:
+ * 	a power law, |response| = a * concentration^b, as a line through log |response|
+ * 	against log concentration, and
+ * 	a log-linear curve, response = m * ln(concentration) + k.
+ * The sensitivity is the slope of a straight line fit of the response against the
+ * concentration, and the limit of detection is the concentration whose response would be
+ * three times the baseline noise.
+ *
+ * Exposures with a concentration of 0 or less, or no response, are left out of the
+ * logarithmic fits. A fit that has fewer than two points to work with is NaN.
+ */
+public class CalibrationCurve
+{
+	/** Multiple of the baseline noise a response has to reach to be detected **/
+	public static final double DETECTION_SIGNAL_TO_NOISE = 3.0;
+
+	private final String mGasName;
+	private final double mPowerCoefficient;
+	private final double mPowerExponent;
+	private final double mPowerRSquared;
+	private final double mLogSlope;
+	private final double mLogIntercept;
+	private final double mLogRSquared;
+	private final double mSensitivity;
+	private final double mBaselineNoise;
+	private final double mDetectionLimit;
+
+	private CalibrationCurve(String gasName, double[] power, double[] log, double[] linear,
+			double baselineNoise) {
+		mGasName = gasName;
+		mPowerCoefficient = Math.exp(power[1]);
+		mPowerExponent = power[0];
+		mPowerRSquared = power[2];
+		mLogSlope = log[0];
+		mLogIntercept = log[1];
+		mLogRSquared = log[2];
+		mSensitivity = linear[0];
+		mBaselineNoise = baselineNoise;
+		mDetectionLimit = DETECTION_SIGNAL_TO_NOISE * baselineNoise / Math.abs(mSensitivity);
+	}
+
+	/**
+	 * Fits the calibration curves of an analyzed run.
+	 */
+	public static CalibrationCurve fit(ProcessingResult result) {
+		DoubleSeries concentrations = result.getConcentrations();
+		DoubleSeries responses = result.getMaxResponses();
+		int size = Math.min(concentrations.size(), responses.size());
+		double[] logConcentrations = new double[size];
+		double[] logResponses = new double[size];
+		double[] logLinearResponses = new double[size];
+		int logSize = 0;
+		for (int i = 0; i < size; ++i) {
+			double concentration = concentrations.get(i);
+			double response = responses.get(i);
+			if (concentration > 0 && response != 0) {
+				logConcentrations[logSize] = Math.log(concentration);
+				logResponses[logSize] = Math.log(Math.abs(response));
+				logLinearResponses[logSize] = response;
+				logSize++;
+			}
+		}
+		double[] power = fitLine(logConcentrations, logResponses, logSize);
+		double[] log = fitLine(logConcentrations, logLinearResponses, logSize);
+		double[] linear = fitLine(concentrations.toArray(), responses.toArray(), size);
+		return new CalibrationCurve(result.getGasName(), power, log, linear,
+				findBaselineNoise(result));
+	}
+
+	/**
+	 * Returns the mean of the baseline noise before each exposure of the run.
+	 */
+	private static double findBaselineNoise(ProcessingResult result) {
+		List<ExposureKinetics> kinetics = result.getKinetics();
+		double sum = 0;
+		int count = 0;
+		for (int i = 0; i < kinetics.size(); ++i) {
+			double noise = kinetics.get(i).getBaselineNoise();
+			if (!Double.isNaN(noise)) {
+				sum += noise;
+				count++;
+			}
+		}
+		return count > 0 ? sum / count : Double.NaN;
+	}
+
+	/**
+	 * Fits a straight line to the first size points by least squares.
+	 *
+	 * @return The slope, intercept and r^2 of the line.
+	 */
+	private static double[] fitLine(double[] x, double[] y, int size) {
+		double[] line = {Double.NaN, Double.NaN, Double.NaN};
+		if (size < 2) {
+			return line;
+		}
+		double meanX = 0;
+		double meanY = 0;
+		for (int i = 0; i < size; ++i) {
+			meanX += x[i];
+			meanY += y[i];
+		}
+		meanX /= size;
+		meanY /= size;
+		double sumXX = 0;
+		double sumXY = 0;
+		double sumYY = 0;
+		for (int i = 0; i < size; ++i) {
+			double dx = x[i] - meanX;
+			double dy = y[i] - meanY;
+			sumXX += dx * dx;
+			sumXY += dx * dy;
+			sumYY += dy * dy;
+		}
+		if (sumXX == 0) {
+			return line;
+		}
+		line[0] = sumXY / sumXX;
+		line[1] = meanY - line[0] * meanX;
+		line[2] = sumYY > 0 ? sumXY * sumXY / (sumXX * sumYY) : Double.NaN;
+		return line;
+	}
+
+	public String getGasName() {
+		return mGasName;
+	}
+
+	/**
+	 * @return a in |response| = a * concentration^b.
+	 */
+	public double getPowerCoefficient() {
+		return mPowerCoefficient;
+	}
+
+	/**
+	 * @return b in |response| = a * concentration^b.
+	 */
+	public double getPowerExponent() {
+		return mPowerExponent;
+	}
+
+	/**
+	 * @return The r^2 of the power law in log space.
+	 */
+	public double getPowerRSquared() {
+		return mPowerRSquared;
+	}
+
+	/**
+	 * @return m in response = m * ln(concentration) + k.
+	 */
+	public double getLogSlope() {
+		return mLogSlope;
+	}
+
+	/**
+	 * @return k in response = m * ln(concentration) + k.
+	 */
+	public double getLogIntercept() {
+		return mLogIntercept;
+	}
+
+	public double getLogRSquared() {
+		return mLogRSquared;
+	}
+
+	/**
+	 * @return The change in normalized resistance per ppm, in percent.
+	 */
+	public double getSensitivity() {
+		return mSensitivity;
+	}
+
+	/**
+	 * @return The mean standard deviation of the baseline before each exposure.
+	 */
+	public double getBaselineNoise() {
+		return mBaselineNoise;
+	}
+
+	/**
+	 * @return The limit of detection in ppm.
+	 */
+	public double getDetectionLimit() {
+		return mDetectionLimit;
+	}
+}
@@ -16,44 +16,99 @@ import javax.swing.border.EmptyBorder;
 public class DataProcessingPanel extends JPanel {
 
 	private static final String REMOVE_OUTLIERS_LABEL = "Remove Outliers (Number of passes - 0 for no outlier removal):";
+	private static final String OUTLIER_MODE_LABEL = "Outlier Detection:";
+	private static final String HAMPEL_WINDOW_LABEL = "Rolling Hampel Window (Samples):";
+	private static final int MAX_HAMPEL_WINDOW = 100001;
 	private static final String STD_THRESHOLD_LABEL = "Standard Deviation Threshold:";
-	private static final String SMOOTH_DATA_LABEL = "Apply Smooth Moving Average (Period - 0 for no smoothing):";
-	private static final String BASELINE_DRIFT_LABEL = "Account for baseline drift using simple linear regression";
+	private static final String SMOOTHING_FILTER_LABEL = "Smoothing Filter:";
+	private static final String SMOOTH_DATA_LABEL = "Smoothing Period (Samples - 0 for no smoothing):";
+	private static final int MAX_SMOOTH_DATA_PERIOD = 10000;
+	private static final String BASELINE_DRIFT_LABEL = "Account for baseline drift using the model:";
+	private static final String DRIFT_DEGREE_LABEL = "Polynomial Drift Degree:";
+	private static final int MAX_DRIFT_DEGREE = 6;
+	private static final String IMAGE_COMPRESSION_LABEL = "PNG Compression Level (0 - fastest, 9 - smallest):";
 	
 	private JLabel mRemoveOutliersLabel;
 	private JSpinner mRemoveOutliers;
+	private JLabel mOutlierModeLabel;
+	private JComboBox<OutlierMode> mOutlierMode;
+	private JLabel mHampelWindowLabel;
+	private JSpinner mHampelWindow;
 	private JLabel mOutlierStdThresholdLabel;
 	private JSpinner mOutlierStdThreshold;
+	private JLabel mSmoothingFilterLabel;
+	private JComboBox<SmoothingFilter> mSmoothingFilter;
 	private JLabel mSmoothDataLabel;
 	private JSpinner mSmoothDataPeriod;
 	private JCheckBox mBaselineDriftCheckBox;
+	private JComboBox<DriftModel> mDriftModel;
+	private JLabel mDriftDegreeLabel;
+	private JSpinner mDriftDegree;
+	private JLabel mImageCompressionLabel;
+	private JSpinner mImageCompressionLevel;
 
 	public DataProcessingPanel() {
-		super(new GridLayout(4, 1));
+		super(new GridLayout(9, 1));
 		super.setBorder(new EmptyBorder(10, 10, 10, 10));
 		mRemoveOutliersLabel = new JLabel(REMOVE_OUTLIERS_LABEL);
 		mRemoveOutliersLabel.setHorizontalAlignment(SwingConstants.CENTER);
 		mRemoveOutliers = new JSpinner();
 		mRemoveOutliers.setModel(new SpinnerNumberModel(0, 0, 10, 1));
 		mRemoveOutliers.setEditor(new JSpinner.NumberEditor(mRemoveOutliers, "##"));
+		mOutlierModeLabel = new JLabel(OUTLIER_MODE_LABEL);
+		mOutlierModeLabel.setHorizontalAlignment(SwingConstants.CENTER);
+		mOutlierMode = new JComboBox<OutlierMode>(OutlierMode.values());
+		mHampelWindowLabel = new JLabel(HAMPEL_WINDOW_LABEL);
+		mHampelWindowLabel.setHorizontalAlignment(SwingConstants.CENTER);
+		mHampelWindow = new JSpinner();
+		mHampelWindow.setModel(new SpinnerNumberModel(ProcessingOptions.DEFAULT_HAMPEL_WINDOW,
+				3, MAX_HAMPEL_WINDOW, 2));
+		mHampelWindow.setEditor(new JSpinner.NumberEditor(mHampelWindow, "######"));
 		mOutlierStdThresholdLabel = new JLabel(STD_THRESHOLD_LABEL);
 		mOutlierStdThresholdLabel.setHorizontalAlignment(SwingConstants.CENTER);
 		mOutlierStdThreshold = new JSpinner();
 		mOutlierStdThreshold.setModel(new SpinnerNumberModel(0.0, 0.0, 5.0, 0.1)); 
 		mOutlierStdThreshold.setEditor(new JSpinner.NumberEditor(mOutlierStdThreshold, "0.0"));
+		mSmoothingFilterLabel = new JLabel(SMOOTHING_FILTER_LABEL);
+		mSmoothingFilterLabel.setHorizontalAlignment(SwingConstants.CENTER);
+		mSmoothingFilter = new JComboBox<SmoothingFilter>(SmoothingFilter.values());
 		mSmoothDataLabel = new JLabel(SMOOTH_DATA_LABEL);
 		mSmoothDataLabel.setHorizontalAlignment(SwingConstants.CENTER);
 		mSmoothDataPeriod = new JSpinner();
-		mSmoothDataPeriod.setModel(new SpinnerNumberModel(0, 0, 10, 1));
-		mSmoothDataPeriod.setEditor(new JSpinner.NumberEditor(mSmoothDataPeriod, "##"));
+		mSmoothDataPeriod.setModel(new SpinnerNumberModel(0, 0, MAX_SMOOTH_DATA_PERIOD, 1));
+		mSmoothDataPeriod.setEditor(new JSpinner.NumberEditor(mSmoothDataPeriod, "#####"));
 		mBaselineDriftCheckBox = new JCheckBox(BASELINE_DRIFT_LABEL);
+		mDriftModel = new JComboBox<DriftModel>(DriftModel.values());
+		mDriftDegreeLabel = new JLabel(DRIFT_DEGREE_LABEL);
+		mDriftDegreeLabel.setHorizontalAlignment(SwingConstants.CENTER);
+		mDriftDegree = new JSpinner();
+		mDriftDegree.setModel(new SpinnerNumberModel(ProcessingOptions.DEFAULT_DRIFT_DEGREE, 1,
+				MAX_DRIFT_DEGREE, 1));
+		mDriftDegree.setEditor(new JSpinner.NumberEditor(mDriftDegree, "#"));
+		mImageCompressionLabel = new JLabel(IMAGE_COMPRESSION_LABEL);
+		mImageCompressionLabel.setHorizontalAlignment(SwingConstants.CENTER);
+		mImageCompressionLevel = new JSpinner();
+		mImageCompressionLevel.setModel(new SpinnerNumberModel(
+				PngWriter.DEFAULT_COMPRESSION_LEVEL, 0, PngWriter.MAX_COMPRESSION_LEVEL, 1));
+		mImageCompressionLevel.setEditor(new JSpinner.NumberEditor(mImageCompressionLevel, "#"));
 		super.add(mRemoveOutliersLabel);
 		super.add(mRemoveOutliers);
+		super.add(mOutlierModeLabel);
+		super.add(mOutlierMode);
+		super.add(mHampelWindowLabel);
+		super.add(mHampelWindow);
 		super.add(mOutlierStdThresholdLabel);
 		super.add(mOutlierStdThreshold);
+		super.add(mSmoothingFilterLabel);
+		super.add(mSmoothingFilter);
 		super.add(mSmoothDataLabel);
 		super.add(mSmoothDataPeriod);
 		super.add(mBaselineDriftCheckBox);
+		super.add(mDriftModel);
+		super.add(mDriftDegreeLabel);
+		super.add(mDriftDegree);
+		super.add(mImageCompressionLabel);
+		super.add(mImageCompressionLevel);
 	}
 	
 	public int getOutlierRemoval() {
@@ -64,12 +119,54 @@ public class DataProcessingPanel extends JPanel {
 		return (double) mOutlierStdThreshold.getValue();
 	}
 	
+	public OutlierMode getOutlierMode() {
+		return (OutlierMode) mOutlierMode.getSelectedItem();
+	}
+	
+	public int getHampelWindow() {
+		return (int) mHampelWindow.getValue();
+	}
+	
 	public int getSmoothDataPeriod() {
 		return (int) mSmoothDataPeriod.getValue();
 	}
 	
+	public SmoothingFilter getSmoothingFilter() {
+		return (SmoothingFilter) mSmoothingFilter.getSelectedItem();
+	}
+	
 	public boolean getBaselineDrift() {
 		return mBaselineDriftCheckBox.isSelected();
 	}
+	
+	public DriftModel getDriftModel() {
+		return (DriftModel) mDriftModel.getSelectedItem();
+	}
+	
+	public int getDriftDegree() {
+		return (int) mDriftDegree.getValue();
+	}
+	
+	public int getImageCompressionLevel() {
+		return (int) mImageCompressionLevel.getValue();
+	}
+	
+	/**
+	 * Returns the selected settings as the options used to analyze each file.
+	 */
+	public ProcessingOptions getProcessingOptions() {
+		ProcessingOptions options = new ProcessingOptions();
+		options.setOutlierRemoval(getOutlierRemoval());
+		options.setOutlierStdThreshold(getOutlierStdThreshold());
+		options.setOutlierMode(getOutlierMode());
+		options.setHampelWindow(getHampelWindow());
+		options.setSmoothDataPeriod(getSmoothDataPeriod());
+		options.setSmoothingFilter(getSmoothingFilter());
+		options.setBaselineDrift(getBaselineDrift());
+		options.setDriftModel(getDriftModel());
+		options.setDriftDegree(getDriftDegree());
+		options.setImageCompressionLevel(getImageCompressionLevel());
+		return options;
+	}
 
 }
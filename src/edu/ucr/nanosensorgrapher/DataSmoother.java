@@ -0,0 +1,535 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.Arrays;
+
+/**
+ * DataSmoother smooths a series in place with one of the {@link SmoothingFilter}s. Every
+ * filter is a {@link ProcessingStage} that makes a single pass over the series and only
+ * allocates a scratch window up front, so the averaging filters run in O(n) and the median
+ * in O(n log period) no matter how long the period is. Each filter keeps the original
+ * values of its window itself, so it can share its pass with the stages around it.
+ *
+ * The moving average and Savitzky-Golay filters keep running sums of the window that are
+ * updated as it slides. The sums are recalculated from the window every so often so that
+ * rounding errors can't build up over long runs.
+ */
+public class DataSmoother
+{
+	/**
+	 * Fewest samples between recalculating the running sums from the window. Never less
+	 * than the window itself, so recalculating adds at most one pass over the data.
+	 */
+	private static final int RESYNC_INTERVAL = 256;
+
+	private DataSmoother() {
+	}
+
+	/**
+	 * Smooths the series in place.
+	 *
+	 * @param values The series to smooth.
+	 * @param filter The filter to apply.
+	 * @param period The number of samples in the filter window. The median and
+	 * 			Savitzky-Golay windows are centered on each sample, so an even period is
+	 * 			rounded up to the next odd number.
+	 */
+	public static void smooth(DoubleSeries values, SmoothingFilter filter, int period) {
+		ProcessingStage stage = createStage(filter, period);
+		if (stage != null) {
+			ProcessingPipeline pipeline = new ProcessingPipeline();
+			pipeline.add(stage);
+			pipeline.run(values);
+		}
+	}
+
+	/**
+	 * Creates a stage that smooths a series in place, as {@link #smooth(DoubleSeries,
+	 * SmoothingFilter, int)} does.
+	 *
+	 * @return The stage, or null if the period is too short to smooth anything.
+	 */
+	public static ProcessingStage createStage(SmoothingFilter filter, int period) {
+		return createStage(filter, period, true);
+	}
+
+	/**
+	 * Creates a stage that smooths a series in place.
+	 *
+	 * @param vectorized Whether the simple moving average works a block at a time with
+	 * 			{@link NumericKernels} rather than a value at a time.
+	 * @return The stage, or null if the period is too short to smooth anything.
+	 */
+	public static ProcessingStage createStage(SmoothingFilter filter, int period,
+			boolean vectorized) {
+		if (period <= 1) {
+			return null;
+		}
+		switch (filter) {
+		case SIMPLE_MOVING_AVERAGE:
+			return vectorized ? new BlockMovingAverage(period) : new SimpleMovingAverage(period);
+		case EXPONENTIAL_MOVING_AVERAGE:
+			return new ExponentialMovingAverage(period);
+		case MEDIAN:
+			return new Median(period / 2);
+		case SAVITZKY_GOLAY:
+			return new SavitzkyGolay(period / 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Replaces each value from index period - 1 on with the average of the last period
+	 * values. The first period - 1 values don't have a full window and are left as is.
+	 */
+	private static class SimpleMovingAverage extends ProcessingStage
+	{
+		private final int mPeriod;
+		private final int mResyncInterval;
+		/** The original values of the window, since the series is overwritten in place **/
+		private final double[] mWindow;
+		private double mSum;
+
+		public SimpleMovingAverage(int period) {
+			super(Kind.POINTWISE);
+			mPeriod = period;
+			mResyncInterval = Math.max(RESYNC_INTERVAL, period);
+			mWindow = new double[period];
+		}
+
+		@Override
+		public void begin(DoubleSeries values) {
+			Arrays.fill(mWindow, 0);
+			mSum = 0;
+		}
+
+		@Override
+		public void process(DoubleSeries values, int from, int to) {
+			double sum = mSum;
+			for (int i = from; i < to; ++i) {
+				double value = values.get(i);
+				int slot = i % mPeriod;
+				sum += value - mWindow[slot];
+				mWindow[slot] = value;
+				if (i >= mPeriod - 1) {
+					if (i % mResyncInterval == 0) {
+						sum = sum(mWindow);
+					}
+					values.set(i, sum / mPeriod);
+				}
+			}
+			mSum = sum;
+		}
+	}
+
+	/**
+	 * The same average as {@link SimpleMovingAverage} worked out a block at a time. The
+	 * change in the sum at each value, the value minus the one period before it, is found
+	 * for the whole block at once and turned into the sums with
+	 * {@link NumericKernels#runningSums(double[], int, int, double)}, so there is no
+	 * per value bookkeeping of the window. The sum is recalculated from the window at the
+	 * start of a block once at least the resync interval has passed.
+	 */
+	private static class BlockMovingAverage extends ProcessingStage
+	{
+		private final int mPeriod;
+		private final int mResyncInterval;
+		/**
+		 * The original values of the window from mHistoryStart on, followed by the block
+		 * being averaged. The window is moved back to the start when the array runs out.
+		 */
+		private double[] mHistory;
+		private int mHistoryStart;
+		private double[] mSums;
+		private double mSum;
+		private int mSinceResync;
+
+		public BlockMovingAverage(int period) {
+			super(Kind.POINTWISE);
+			mPeriod = period;
+			mResyncInterval = Math.max(RESYNC_INTERVAL, period);
+			mHistory = new double[period + 2 * ProcessingPipeline.BLOCK_SIZE];
+			mSums = new double[ProcessingPipeline.BLOCK_SIZE];
+		}
+
+		@Override
+		public void begin(DoubleSeries values) {
+			Arrays.fill(mHistory, 0, mPeriod, 0);
+			mHistoryStart = 0;
+			mSum = 0;
+			mSinceResync = 0;
+		}
+
+		@Override
+		public void process(DoubleSeries values, int from, int to) {
+			int period = mPeriod;
+			int length = to - from;
+			if (mHistoryStart + period + length > mHistory.length) {
+				double[] history = mHistory;
+				if (period + length > history.length) {
+					history = new double[period + 2 * length];
+				}
+				System.arraycopy(mHistory, mHistoryStart, history, 0, period);
+				mHistory = history;
+				mHistoryStart = 0;
+			}
+			if (length > mSums.length) {
+				mSums = new double[length];
+			}
+			double[] history = mHistory;
+			double[] sums = mSums;
+			int windowStart = mHistoryStart;
+			int blockStart = windowStart + period;
+			values.get(from, history, blockStart, length);
+
+			double sum = mSum;
+			if (from >= period && mSinceResync >= mResyncInterval) {
+				sum = 0;
+				for (int i = windowStart; i < blockStart; ++i) {
+					sum += history[i];
+				}
+				mSinceResync = 0;
+			}
+			for (int i = 0; i < length; ++i) {
+				sums[i] = history[blockStart + i] - history[windowStart + i];
+			}
+			mSum = NumericKernels.runningSums(sums, 0, length, sum);
+			for (int i = 0; i < length; ++i) {
+				sums[i] /= period;
+			}
+			/** The first period - 1 values don't have a full window and are left as is **/
+			int first = Math.max(0, Math.min(length, period - 1 - from));
+			values.set(from + first, sums, first, length - first);
+			mHistoryStart += length;
+			mSinceResync += length;
+		}
+	}
+
+	private static class ExponentialMovingAverage extends ProcessingStage
+	{
+		private final double mAlpha;
+		private double mAverage;
+
+		public ExponentialMovingAverage(int period) {
+			super(Kind.POINTWISE);
+			mAlpha = 2.0 / (period + 1);
+		}
+
+		@Override
+		public void process(DoubleSeries values, int from, int to) {
+			double average = mAverage;
+			for (int i = from; i < to; ++i) {
+				if (i == 0) {
+					average = values.get(0);
+				} else {
+					average += mAlpha * (values.get(i) - average);
+					values.set(i, average);
+				}
+			}
+			mAverage = average;
+		}
+	}
+
+	/**
+	 * Replaces each value with the median of the values within halfWidth samples of it.
+	 * The window is cut short at both ends of the series. The window is kept split between
+	 * a max heap of its lower half and a min heap of its upper half, so each step costs
+	 * O(log window) no matter where in the window the leaving value is.
+	 */
+	private static class Median extends ProcessingStage
+	{
+		private final int mHalfWidth;
+		private final int mWidth;
+		private SlidingMedian mWindow;
+
+		public Median(int halfWidth) {
+			super(Kind.WINDOWED);
+			mHalfWidth = halfWidth;
+			mWidth = 2 * halfWidth + 1;
+		}
+
+		@Override
+		public int getLookahead() {
+			return mHalfWidth;
+		}
+
+		@Override
+		public void begin(DoubleSeries values) {
+			mWindow = new SlidingMedian(mWidth);
+		}
+
+		@Override
+		public void process(DoubleSeries values, int from, int to) {
+			int size = values.size();
+			if (from == 0) {
+				for (int i = 0; i < mHalfWidth && i < size; ++i) {
+					mWindow.add(i % mWidth, values.get(i));
+				}
+			}
+			for (int i = from; i < to; ++i) {
+				/** The leaving and entering samples share a slot, so remove first **/
+				int leaving = i - mHalfWidth - 1;
+				if (leaving >= 0) {
+					mWindow.remove(leaving % mWidth);
+				}
+				int entering = i + mHalfWidth;
+				if (entering < size) {
+					mWindow.add(entering % mWidth, values.get(entering));
+				}
+				values.set(i, mWindow.median());
+			}
+		}
+	}
+
+	/**
+	 * Replaces each value with the center of a quadratic least squares fit over the values
+	 * within halfWidth samples of it. The weight of the value j samples from the center is
+	 * A - B * j^2, so the fit only needs the running sums of x and j^2 * x over the window
+	 * (and j * x to slide j^2 * x). The first and last halfWidth values don't have a full
+	 * window and are left as is.
+	 */
+	private static class SavitzkyGolay extends ProcessingStage
+	{
+		private final int mHalfWidth;
+		private final int mWidth;
+		private final double mWeightA;
+		private final double mWeightB;
+		private final int mResyncInterval;
+		/** The original values of the window, since the series is overwritten in place **/
+		private final double[] mWindow;
+		/** Sums of x, j * x and j^2 * x over the window, j relative to the center **/
+		private final double[] mSums = new double[3];
+
+		public SavitzkyGolay(int halfWidth) {
+			super(Kind.WINDOWED);
+			mHalfWidth = halfWidth;
+			mWidth = 2 * halfWidth + 1;
+			double m = halfWidth;
+			double denominator = (2 * m - 1) * (2 * m + 1) * (2 * m + 3);
+			mWeightA = 3 * (3 * m * m + 3 * m - 1) / denominator;
+			mWeightB = 15 / denominator;
+			mResyncInterval = Math.max(RESYNC_INTERVAL, mWidth);
+			mWindow = new double[mWidth];
+		}
+
+		@Override
+		public int getLookahead() {
+			return mHalfWidth;
+		}
+
+		@Override
+		public void process(DoubleSeries values, int from, int to) {
+			int halfWidth = mHalfWidth;
+			int size = values.size();
+			int start = Math.max(from, halfWidth);
+			int stop = Math.min(to, size - halfWidth);
+			double m = halfWidth;
+			double entryWeight = m + 1;
+			double sum0 = mSums[0];
+			double sum1 = mSums[1];
+			double sum2 = mSums[2];
+			for (int center = start; center < stop; ++center) {
+				if (center == halfWidth) {
+					for (int i = 0; i < mWidth; ++i) {
+						mWindow[i] = values.get(i);
+					}
+					windowSums(mWindow, halfWidth, halfWidth, mSums);
+					sum0 = mSums[0];
+					sum1 = mSums[1];
+					sum2 = mSums[2];
+				} else {
+					int slot = (center - halfWidth - 1) % mWidth;
+					double leavingValue = mWindow[slot];
+					double enteringValue = values.get(center + halfWidth);
+					mWindow[slot] = enteringValue;
+					if (center % mResyncInterval == 0) {
+						windowSums(mWindow, halfWidth, center, mSums);
+						sum0 = mSums[0];
+						sum1 = mSums[1];
+						sum2 = mSums[2];
+					} else {
+						/** Shift j down by one: j^2 x -> (j^2 - 2j + 1) x, j x -> (j - 1) x **/
+						double shifted0 = sum0 - leavingValue + enteringValue;
+						double shifted1 = sum1 + m * leavingValue + entryWeight * enteringValue;
+						double shifted2 = sum2 - m * m * leavingValue +
+								entryWeight * entryWeight * enteringValue;
+						sum2 = shifted2 - 2 * shifted1 + shifted0;
+						sum1 = shifted1 - shifted0;
+						sum0 = shifted0;
+					}
+				}
+				values.set(center, mWeightA * sum0 - mWeightB * sum2);
+			}
+			mSums[0] = sum0;
+			mSums[1] = sum1;
+			mSums[2] = sum2;
+		}
+	}
+
+	/**
+	 * Calculates the sums of x, j * x and j^2 * x over the window centered on center,
+	 * where the sample at index s is stored in window[s % window.length].
+	 */
+	private static void windowSums(double[] window, int halfWidth, int center,
+			double[] sums) {
+		double sum0 = 0;
+		double sum1 = 0;
+		double sum2 = 0;
+		for (int j = -halfWidth; j <= halfWidth; ++j) {
+			double value = window[(center + j) % window.length];
+			sum0 += value;
+			sum1 += j * value;
+			sum2 += j * j * value;
+		}
+		sums[0] = sum0;
+		sums[1] = sum1;
+		sums[2] = sum2;
+	}
+
+	private static double sum(double[] values) {
+		double sum = 0;
+		for (int i = 0; i < values.length; ++i) {
+			sum += values[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * The values of a sliding window split into a max heap holding the lower half and a
+	 * min heap holding the upper half. Values are identified by a slot number so any value
+	 * can be removed, not just the top of a heap.
+	 */
+	private static class SlidingMedian
+	{
+		private final double[] mValues;
+		/** Heaps of slots, ordered by the value in the slot **/
+		private final int[] mLower;
+		private final int[] mUpper;
+		private int mLowerSize;
+		private int mUpperSize;
+		/** Index of each slot within its heap **/
+		private final int[] mPositions;
+		private final boolean[] mInLower;
+
+		public SlidingMedian(int capacity) {
+			mValues = new double[capacity];
+			mLower = new int[capacity];
+			mUpper = new int[capacity];
+			mPositions = new int[capacity];
+			mInLower = new boolean[capacity];
+		}
+
+		public void add(int slot, double value) {
+			mValues[slot] = value;
+			if (mLowerSize == 0 || value <= mValues[mLower[0]]) {
+				mInLower[slot] = true;
+				mLower[mLowerSize] = slot;
+				mPositions[slot] = mLowerSize;
+				siftUp(mLower, mLowerSize++, true);
+			} else {
+				mInLower[slot] = false;
+				mUpper[mUpperSize] = slot;
+				mPositions[slot] = mUpperSize;
+				siftUp(mUpper, mUpperSize++, false);
+			}
+			rebalance();
+		}
+
+		public void remove(int slot) {
+			if (mInLower[slot]) {
+				removeAt(mLower, --mLowerSize, mPositions[slot], true);
+			} else {
+				removeAt(mUpper, --mUpperSize, mPositions[slot], false);
+			}
+			rebalance();
+		}
+
+		/**
+		 * The lower heap holds the middle value of an odd sized window, otherwise the
+		 * median is the average of both middle values.
+		 */
+		public double median() {
+			if (mLowerSize > mUpperSize) {
+				return mValues[mLower[0]];
+			}
+			return (mValues[mLower[0]] + mValues[mUpper[0]]) / 2;
+		}
+
+		private void rebalance() {
+			if (mLowerSize > mUpperSize + 1) {
+				int slot = mLower[0];
+				removeAt(mLower, --mLowerSize, 0, true);
+				mInLower[slot] = false;
+				mUpper[mUpperSize] = slot;
+				mPositions[slot] = mUpperSize;
+				siftUp(mUpper, mUpperSize++, false);
+			} else if (mUpperSize > mLowerSize) {
+				int slot = mUpper[0];
+				removeAt(mUpper, --mUpperSize, 0, false);
+				mInLower[slot] = true;
+				mLower[mLowerSize] = slot;
+				mPositions[slot] = mLowerSize;
+				siftUp(mLower, mLowerSize++, true);
+			}
+		}
+
+		/**
+		 * Removes the slot at index from a heap whose new size is last, by moving the last
+		 * slot into its place.
+		 */
+		private void removeAt(int[] heap, int last, int index, boolean lower) {
+			if (index == last) {
+				return;
+			}
+			heap[index] = heap[last];
+			mPositions[heap[index]] = index;
+			siftDown(heap, last, siftUp(heap, index, lower), lower);
+		}
+
+		/**
+		 * Whether the value in slot a belongs above the value in slot b.
+		 */
+		private boolean above(int a, int b, boolean lower) {
+			return lower ? mValues[a] > mValues[b] : mValues[a] < mValues[b];
+		}
+
+		/**
+		 * @return The index the slot ended up at.
+		 */
+		private int siftUp(int[] heap, int index, boolean lower) {
+			int slot = heap[index];
+			while (index > 0) {
+				int parent = (index - 1) / 2;
+				if (!above(slot, heap[parent], lower)) {
+					break;
+				}
+				heap[index] = heap[parent];
+				mPositions[heap[index]] = index;
+				index = parent;
+			}
+			heap[index] = slot;
+			mPositions[slot] = index;
+			return index;
+		}
+
+		private void siftDown(int[] heap, int size, int index, boolean lower) {
+			int slot = heap[index];
+			while (true) {
+				int child = 2 * index + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && above(heap[child + 1], heap[child], lower)) {
+					child++;
+				}
+				if (!above(heap[child], slot, lower)) {
+					break;
+				}
+				heap[index] = heap[child];
+				mPositions[heap[index]] = index;
+				index = child;
+			}
+			heap[index] = slot;
+			mPositions[slot] = index;
+		}
+	}
+}
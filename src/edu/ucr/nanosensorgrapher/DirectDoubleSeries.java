@@ -0,0 +1,213 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * DirectDoubleSeries is a {@link DoubleSeries} stored outside of the Java heap in a direct
+ * or memory mapped {@link ByteBuffer}. The memory is released by {@link #free()} as soon as
+ * the series is no longer needed instead of whenever the buffer is garbage collected.
+ */
+class DirectDoubleSeries extends DoubleSeries
+{
+	/** Most doubles a single direct buffer can hold **/
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE / 8;
+
+	/** Used to release a buffer on Java 9 and later, null before that **/
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+			unsafeField.setAccessible(true);
+			unsafe = unsafeField.get(null);
+		} catch (Exception e) {
+			/** Before Java 9 the buffer is released through its own cleaner **/
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	/** The buffer owned by the series, null for slices which share their parent's **/
+	private ByteBuffer mBuffer;
+	private DoubleBuffer mValues;
+	private int mSize;
+	/** Slices and wrapped buffers have a fixed size **/
+	private final boolean mFixedSize;
+
+	DirectDoubleSeries(int capacity) {
+		this(allocateBuffer(capacity), 0, false);
+	}
+
+	/**
+	 * @param buffer The buffer holding the values, owned by the series if it isn't a slice.
+	 * @param size The number of values in the series.
+	 * @param fixedSize Whether the series can grow past the end of the buffer.
+	 */
+	DirectDoubleSeries(ByteBuffer buffer, int size, boolean fixedSize) {
+		mBuffer = buffer;
+		mValues = buffer.asDoubleBuffer();
+		mSize = size;
+		mFixedSize = fixedSize;
+	}
+
+	private DirectDoubleSeries(DoubleBuffer slice) {
+		mValues = slice;
+		mSize = slice.capacity();
+		mFixedSize = true;
+	}
+
+	private static ByteBuffer allocateBuffer(int capacity) {
+		if (capacity > MAX_CAPACITY) {
+			throw (new IllegalArgumentException("A direct series can hold at most " +
+					MAX_CAPACITY + " values"));
+		}
+		return ByteBuffer.allocateDirect(Math.max(capacity, DEFAULT_CAPACITY) * 8)
+				.order(ByteOrder.nativeOrder());
+	}
+
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	@Override
+	public double get(int index) {
+		return mValues.get(index);
+	}
+
+	@Override
+	public void set(int index, double value) {
+		mValues.put(index, value);
+	}
+
+	@Override
+	public void add(double value) {
+		if (mFixedSize || mSize == mValues.capacity()) {
+			ensureCapacity(mSize + 1);
+		}
+		mValues.put(mSize++, value);
+	}
+
+	@Override
+	public void addAll(DoubleSeries series) {
+		int length = series.size();
+		ensureCapacity(mSize + length);
+		DoubleBuffer destination = mValues.duplicate();
+		destination.position(mSize);
+		if (series instanceof DirectDoubleSeries) {
+			destination.put(((DirectDoubleSeries) series).view(0, length));
+		} else {
+			destination.put(series.toArray());
+		}
+		mSize += length;
+	}
+
+	@Override
+	public void ensureCapacity(int capacity) {
+		if (mFixedSize) {
+			throw (new UnsupportedOperationException("A slice can't grow"));
+		}
+		int oldCapacity = mValues.capacity();
+		if (capacity > oldCapacity) {
+			long newCapacity = Math.max(capacity, oldCapacity + (oldCapacity >> 1));
+			ByteBuffer buffer = allocateBuffer((int) Math.min(newCapacity,
+					Math.max(capacity, MAX_CAPACITY)));
+			DoubleBuffer values = buffer.asDoubleBuffer();
+			values.put(view(0, mSize));
+			freeBuffer(mBuffer);
+			mBuffer = buffer;
+			mValues = values;
+		}
+	}
+
+	@Override
+	public void clear() {
+		if (mFixedSize) {
+			throw (new UnsupportedOperationException("A slice can't be cleared"));
+		}
+		mSize = 0;
+	}
+
+	@Override
+	public DoubleSeries slice(int from, int to) {
+		checkSlice(from, to, mSize);
+		return new DirectDoubleSeries(view(from, to).slice());
+	}
+
+	@Override
+	public void get(int index, double[] destination, int destinationIndex, int length) {
+		view(index, index + length).get(destination, destinationIndex, length);
+	}
+
+	@Override
+	public void set(int index, double[] source, int sourceIndex, int length) {
+		DoubleBuffer values = mValues.duplicate();
+		values.position(index);
+		values.put(source, sourceIndex, length);
+	}
+
+	@Override
+	public boolean isDirect() {
+		return true;
+	}
+
+	/**
+	 * Releases the buffer holding the values. Neither the series nor any slice taken from
+	 * it may be used afterwards. Freeing a slice does nothing.
+	 */
+	@Override
+	public void free() {
+		if (mBuffer != null) {
+			ByteBuffer buffer = mBuffer;
+			mBuffer = null;
+			mValues = null;
+			mSize = 0;
+			freeBuffer(buffer);
+		}
+	}
+
+	/**
+	 * Returns a buffer over the values from index from (inclusive) to index to (exclusive)
+	 * without copying them.
+	 */
+	private DoubleBuffer view(int from, int to) {
+		DoubleBuffer values = mValues.duplicate();
+		values.limit(to);
+		values.position(from);
+		return values;
+	}
+
+	/**
+	 * Releases the native memory of a direct or mapped buffer right away. If that isn't
+	 * possible on this JVM the memory is released when the buffer is garbage collected.
+	 */
+	private static void freeBuffer(ByteBuffer buffer) {
+		if (buffer == null) {
+			return;
+		}
+		try {
+			if (INVOKE_CLEANER != null) {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			} else {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (Exception e) {
+			/** Left for the garbage collector **/
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * DoubleSeries is a growable series of primitive doubles, used in place of
+ * ArrayList&lt;Double&gt; so values are never boxed and loops over a series compile down
+ * to plain array scans.
+ *
+ * A series is created with {@link #allocate(int)} or {@link #wrap(double[], int)} on the
+ * Java heap, or with {@link #allocateDirect(int)} or {@link #wrap(ByteBuffer)} outside of
+ * it. Direct series keep large batches from filling the heap; their memory is released by
+ * {@link #free()} as soon as they are no longer needed.
+ * {@link #slice(int, int)} returns a fixed size view that shares the values of the series
+ * it was taken from, so a range can be passed around without being copied.
+ */
+public abstract class DoubleSeries
+{
+	static final int DEFAULT_CAPACITY = 16;
+
+	DoubleSeries() {
+	}
+
+	/**
+	 * Creates an empty series on the heap.
+	 *
+	 * @param capacity The number of values the series can hold before it has to grow.
+	 */
+	public static DoubleSeries allocate(int capacity) {
+		return new HeapDoubleSeries(new double[Math.max(capacity, DEFAULT_CAPACITY)], 0, 0,
+				false);
+	}
+
+	public static DoubleSeries allocate() {
+		return allocate(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty series outside of the heap. It must be released with
+	 * {@link #free()} once it is no longer needed.
+	 *
+	 * @param capacity The number of values the series can hold before it has to grow.
+	 */
+	public static DoubleSeries allocateDirect(int capacity) {
+		return new DirectDoubleSeries(capacity);
+	}
+
+	/**
+	 * Creates an empty series on or outside of the heap.
+	 */
+	public static DoubleSeries allocate(int capacity, boolean direct) {
+		return direct ? allocateDirect(capacity) : allocate(capacity);
+	}
+
+	/**
+	 * Creates a series backed by the passed in array. Changes to the series are visible in
+	 * the array until the series has to grow.
+	 *
+	 * @param values The array holding the values.
+	 * @param size The number of values at the start of the array that are in the series.
+	 */
+	public static DoubleSeries wrap(double[] values, int size) {
+		return new HeapDoubleSeries(values, 0, size, false);
+	}
+
+	/**
+	 * Creates a fixed size series over the doubles remaining in a direct or memory mapped
+	 * buffer, read in the byte order of the buffer. The series takes over the buffer, and
+	 * {@link #free()} releases (or unmaps) it.
+	 */
+	public static DoubleSeries wrap(ByteBuffer buffer) {
+		return new DirectDoubleSeries(buffer, buffer.remaining() / 8, true);
+	}
+
+	public abstract int size();
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public abstract double get(int index);
+
+	public abstract void set(int index, double value);
+
+	/**
+	 * Appends a value to the end of the series.
+	 */
+	public abstract void add(double value);
+
+	/**
+	 * Appends every value of the passed in series to the end of this one.
+	 */
+	public abstract void addAll(DoubleSeries series);
+
+	public abstract void ensureCapacity(int capacity);
+
+	/**
+	 * Removes every value from the series, keeping its capacity.
+	 */
+	public abstract void clear();
+
+	/**
+	 * Returns a view of the values from index from (inclusive) to index to (exclusive).
+	 * Setting a value of the slice sets it in this series and vice versa.
+	 */
+	public abstract DoubleSeries slice(int from, int to);
+
+	/**
+	 * Copies length values starting at index into the destination array.
+	 */
+	public abstract void get(int index, double[] destination, int destinationIndex,
+			int length);
+
+	/**
+	 * Copies length values from the source array into the series starting at index.
+	 */
+	public abstract void set(int index, double[] source, int sourceIndex, int length);
+
+	/**
+	 * Returns a copy of the values in a new array of exactly {@link #size()}.
+	 */
+	public double[] toArray() {
+		double[] values = new double[size()];
+		get(0, values, 0, values.length);
+		return values;
+	}
+
+	/**
+	 * Returns whether the values are stored outside of the heap.
+	 */
+	public abstract boolean isDirect();
+
+	/**
+	 * Returns the array holding the values of a heap series, so a loop can run over the
+	 * array itself, or null for a direct series. Only valid until the series grows.
+	 */
+	double[] array() {
+		return null;
+	}
+
+	/**
+	 * Returns the index in {@link #array()} of the first value of the series.
+	 */
+	int arrayOffset() {
+		return 0;
+	}
+
+	/**
+	 * Releases the memory of a direct series right away instead of when it is garbage
+	 * collected. Does nothing for a heap series.
+	 */
+	public void free() {
+	}
+
+	static void checkSlice(int from, int to, int size) {
+		if (from < 0 || to > size || from > to) {
+			throw (new IndexOutOfBoundsException("Slice " + from + " - " + to +
+					" of series of size " + size));
+		}
+	}
+}
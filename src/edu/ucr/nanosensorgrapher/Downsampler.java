@@ -0,0 +1,135 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * Downsampler reduces a series to the points that can actually be told apart on a plot,
+ * so the cost of drawing it doesn't grow with the length of the run.
+ *
+ * The points are mapped to pixels and every run of consecutive points that lands in the
+ * same pixel column is collapsed to at most four: the first, the lowest, the highest and
+ * the last, in the order they came in. A line through those covers exactly the pixels a
+ * line through every point would, so spikes and the peaks of the exposures are kept, and
+ * the result is at most four points per column however many samples the series has. It
+ * is found in a single O(n) pass with no allocation.
+ */
+public class Downsampler
+{
+	/** Most points a pixel column is collapsed to **/
+	public static final int POINTS_PER_COLUMN = 4;
+
+	private Downsampler() {
+	}
+
+	/**
+	 * Counts the runs of consecutive points that land in the same pixel column, which is
+	 * how many columns {@link #collapseColumns} adds. A column the series leaves and comes
+	 * back to, such as when the time goes backwards, is counted once per run.
+	 *
+	 * @return The number of runs, at most the number of points.
+	 */
+	public static int countColumns(DoubleSeries x, DoubleSeries y, int size,
+			double xScale, double xOffset) {
+		int count = 0;
+		int column = 0;
+		for (int i = 0; i < size; ++i) {
+			if (Double.isNaN(y.get(i))) {
+				continue;
+			}
+			int pointX = (int) (x.get(i) * xScale + xOffset);
+			if (count == 0 || pointX != column) {
+				column = pointX;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Maps the points of a series to pixels and collapses each pixel column.
+	 * The pixel of point i is (int) (x[i] * xScale + xOffset), (int) (y[i] * yScale + yOffset).
+	 * Points whose y value is NaN are left out.
+	 *
+	 * @param x The x value of each point, normally in increasing order.
+	 * @param y The y value of each point.
+	 * @param size The number of points at the start of the series to collapse.
+	 * @param xPoints Receives the pixel x of each point of the polyline, at least
+	 * 			{@link #POINTS_PER_COLUMN} times {@link #countColumns} long.
+	 * @param yPoints Receives the pixel y of each point of the polyline, as long as xPoints.
+	 * @return The number of points of the polyline.
+	 */
+	public static int collapseColumns(DoubleSeries x, DoubleSeries y, int size,
+			double xScale, double xOffset, double yScale, double yOffset,
+			int[] xPoints, int[] yPoints) {
+		int count = 0;
+		int column = 0;
+		int first = 0;
+		int low = 0;
+		int high = 0;
+		int last = 0;
+		/** Whether the high comes before the low in the column **/
+		boolean highFirst = false;
+		boolean empty = true;
+		for (int i = 0; i < size; ++i) {
+			double value = y.get(i);
+			if (Double.isNaN(value)) {
+				continue;
+			}
+			int pointX = (int) (x.get(i) * xScale + xOffset);
+			int pointY = (int) (value * yScale + yOffset);
+			if (empty || pointX != column) {
+				if (!empty) {
+					count = addColumn(column, first, low, high, last, highFirst,
+							xPoints, yPoints, count);
+				}
+				column = pointX;
+				first = pointY;
+				low = pointY;
+				high = pointY;
+				highFirst = false;
+				empty = false;
+			} else if (pointY < low) {
+				low = pointY;
+				highFirst = true;
+			} else if (pointY > high) {
+				high = pointY;
+				highFirst = false;
+			}
+			last = pointY;
+		}
+		if (!empty) {
+			count = addColumn(column, first, low, high, last, highFirst,
+					xPoints, yPoints, count);
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the points a column was collapsed to, leaving out those that repeat the point
+	 * before them.
+	 *
+	 * @return The number of points of the polyline so far.
+	 */
+	private static int addColumn(int column, int first, int low, int high, int last,
+			boolean highFirst, int[] xPoints, int[] yPoints, int count) {
+		xPoints[count] = column;
+		yPoints[count] = first;
+		count++;
+		int middle0 = highFirst ? high : low;
+		int middle1 = highFirst ? low : high;
+		if (middle0 != yPoints[count - 1]) {
+			xPoints[count] = column;
+			yPoints[count] = middle0;
+			count++;
+		}
+		if (middle1 != yPoints[count - 1]) {
+			xPoints[count] = column;
+			yPoints[count] = middle1;
+			count++;
+		}
+		if (last != yPoints[count - 1]) {
+			xPoints[count] = column;
+			yPoints[count] = last;
+			count++;
+		}
+		return count;
+	}
+}
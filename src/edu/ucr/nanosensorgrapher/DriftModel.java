@@ -0,0 +1,29 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * The shape of the baseline drift {@link BaselineDrift} fits to the baseline, recoveries and
+ * tail of a run.
+ */
+public enum DriftModel
+{
+	/** A straight line over the whole run **/
+	LINEAR("Linear"),
+	/** A polynomial of time of {@link ProcessingOptions#getDriftDegree()} **/
+	POLYNOMIAL("Polynomial"),
+	/**
+	 * Connected straight lines whose slope may change at the start of each exposure, for
+	 * sensors that settle differently after each one.
+	 */
+	PIECEWISE_LINEAR("Piecewise Linear");
+
+	private final String mLabel;
+
+	private DriftModel(String label) {
+		mLabel = label;
+	}
+
+	@Override
+	public String toString() {
+		return mLabel;
+	}
+}
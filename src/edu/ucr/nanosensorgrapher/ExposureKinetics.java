@@ -0,0 +1,84 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * ExposureKinetics holds the features of a single exposure of a run found by
+ * {@link KineticsExtractor}. Every feature is measured from the baseline the sensor
+ * settled at just before the exposure, and is NaN if the run doesn't have the data for it.
+ * If no sample falls in the minutes before the exposure there is no baseline, and every
+ * feature of the exposure is NaN.
+ */
+public class ExposureKinetics
+{
+	private final double mBaseline;
+	private final double mBaselineNoise;
+	private final double mResponse;
+	private final double mResponseTime;
+	private final double mRecoveryTime;
+	private final double mInitialSlope;
+	private final double mArea;
+
+	ExposureKinetics(double baseline, double baselineNoise, double response,
+			double responseTime, double recoveryTime, double initialSlope, double area) {
+		mBaseline = baseline;
+		mBaselineNoise = baselineNoise;
+		mResponse = response;
+		mResponseTime = responseTime;
+		mRecoveryTime = recoveryTime;
+		mInitialSlope = initialSlope;
+		mArea = area;
+	}
+
+	/**
+	 * @return The mean normalized resistance over the minutes before the exposure.
+	 */
+	public double getBaseline() {
+		return mBaseline;
+	}
+
+	/**
+	 * @return The standard deviation of the normalized resistance over the minutes before
+	 * 			the exposure.
+	 */
+	public double getBaselineNoise() {
+		return mBaselineNoise;
+	}
+
+	/**
+	 * @return The change from the baseline furthest from 0 during the exposure.
+	 */
+	public double getResponse() {
+		return mResponse;
+	}
+
+	/**
+	 * @return The minutes from the start of the exposure until the change from the
+	 * 			baseline first reached 90% of the response (t90).
+	 */
+	public double getResponseTime() {
+		return mResponseTime;
+	}
+
+	/**
+	 * @return The minutes from the end of the exposure until the change from the baseline
+	 * 			first fell back to 10% of the response, NaN if it didn't during the recovery.
+	 */
+	public double getRecoveryTime() {
+		return mRecoveryTime;
+	}
+
+	/**
+	 * @return The slope of a linear fit over the first minute of the exposure, in percent
+	 * 			per minute.
+	 */
+	public double getInitialSlope() {
+		return mInitialSlope;
+	}
+
+	/**
+	 * @return The area between the data and the baseline over the exposure, in percent
+	 * 			minutes.
+	 */
+	public double getArea() {
+		return mArea;
+	}
+}
@@ -4,4 +4,8 @@ public class FileException extends Exception {
 	public FileException() {
 		
 	}
+	
+	public FileException(String message) {
+		super(message);
+	}
 }
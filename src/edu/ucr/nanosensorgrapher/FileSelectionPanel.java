@@ -29,10 +29,20 @@ public class FileSelectionPanel extends JPanel implements ActionListener
 	private static final String CHECKBOX_LABEL = "Load file sequence (files must be in " +
 			"the same folder named \"file-1.ext\", \"file-2.ext\", ...)";
 	private static final String CHECKBOX_FOLDER_LABEL = "Load all files in folder";
+	private static final String CHECKBOX_FOLLOW_LABEL = "Follow file while it is being " +
+			"written (live graph)";
+	private static final String CHECKBOX_EXPLORE_LABEL = "Explore file in a zoomable viewer";
+	private static final String CHECKBOX_CACHE_LABEL = "Cache parsed data next to each file " +
+			"for faster reprocessing";
+	private static final String CHECKBOX_OFF_HEAP_LABEL = "Keep parsed data off-heap " +
+			"(large batches)";
+	private static final String PURGE_CACHE_BUTTON_LABEL = "Purge Cache";
 	private static final String LABEL_PREFIX = "File: ";
 	
 	private static final String ERROR_INVALID_SEQUENTIAL_NAME = 
 			"Error: Invalid file name for sequential selection";
+	private static final String ERROR_NO_FILE_SELECTED = "Error: No file selected";
+	private static final String INFO_PURGED_CACHE = "Cache files removed: ";
 
 	private static final int MAX_FILE_NUMBER = 1000;
 
@@ -40,11 +50,16 @@ public class FileSelectionPanel extends JPanel implements ActionListener
 	private JLabel mFileLabel;
 	private JCheckBox mSequenceCheckBox;
 	private JCheckBox mFolderCheckBox;
+	private JCheckBox mFollowCheckBox;
+	private JCheckBox mExploreCheckBox;
+	private JCheckBox mCacheCheckBox;
+	private JCheckBox mOffHeapCheckBox;
+	private JButton mPurgeCacheButton;
 	
 	private File mSelectedFile;
 
 	public FileSelectionPanel() {
-		super(new GridLayout(4, 1));
+		super(new GridLayout(9, 1));
 		super.setBorder(new EmptyBorder(10, 10, 10, 10));
 		mButton = new JButton(BUTTON_LABEL);
 		mButton.addActionListener(this);
@@ -56,10 +71,27 @@ public class FileSelectionPanel extends JPanel implements ActionListener
 		mFolderCheckBox = new JCheckBox(CHECKBOX_FOLDER_LABEL);
 		mFolderCheckBox.setHorizontalAlignment(SwingConstants.CENTER);
 		mFolderCheckBox.addActionListener(this);
+		mFollowCheckBox = new JCheckBox(CHECKBOX_FOLLOW_LABEL);
+		mFollowCheckBox.setHorizontalAlignment(SwingConstants.CENTER);
+		mFollowCheckBox.addActionListener(this);
+		mExploreCheckBox = new JCheckBox(CHECKBOX_EXPLORE_LABEL);
+		mExploreCheckBox.setHorizontalAlignment(SwingConstants.CENTER);
+		mExploreCheckBox.addActionListener(this);
+		mCacheCheckBox = new JCheckBox(CHECKBOX_CACHE_LABEL);
+		mCacheCheckBox.setHorizontalAlignment(SwingConstants.CENTER);
+		mOffHeapCheckBox = new JCheckBox(CHECKBOX_OFF_HEAP_LABEL);
+		mOffHeapCheckBox.setHorizontalAlignment(SwingConstants.CENTER);
+		mPurgeCacheButton = new JButton(PURGE_CACHE_BUTTON_LABEL);
+		mPurgeCacheButton.addActionListener(this);
 		super.add(mButton);
 		super.add(mFileLabel);
 		super.add(mSequenceCheckBox);
 		super.add(mFolderCheckBox);
+		super.add(mFollowCheckBox);
+		super.add(mExploreCheckBox);
+		super.add(mCacheCheckBox);
+		super.add(mOffHeapCheckBox);
+		super.add(mPurgeCacheButton);
 	}
 	
 	@Override
@@ -78,11 +110,43 @@ public class FileSelectionPanel extends JPanel implements ActionListener
 			}
 		} else if (event.getSource() == mSequenceCheckBox) {
 			mFolderCheckBox.setSelected(false);
+			mFollowCheckBox.setSelected(false);
+			mExploreCheckBox.setSelected(false);
 		} else if (event.getSource() == mFolderCheckBox) {
 			mSequenceCheckBox.setSelected(false);
+			mFollowCheckBox.setSelected(false);
+			mExploreCheckBox.setSelected(false);
+		} else if (event.getSource() == mFollowCheckBox) {
+			mSequenceCheckBox.setSelected(false);
+			mFolderCheckBox.setSelected(false);
+			mExploreCheckBox.setSelected(false);
+		} else if (event.getSource() == mExploreCheckBox) {
+			mSequenceCheckBox.setSelected(false);
+			mFolderCheckBox.setSelected(false);
+			mFollowCheckBox.setSelected(false);
+		} else if (event.getSource() == mPurgeCacheButton) {
+			purgeCache();
 		}
 	}
 	
+	/**
+	 * Deletes the cache files of the currently selected files.
+	 */
+	private void purgeCache() {
+		ArrayList<File> selectedFiles = getSelectedFiles();
+		if (selectedFiles == null) {
+			JOptionPane.showMessageDialog(this, ERROR_NO_FILE_SELECTED);
+			return;
+		}
+		int purged = 0;
+		for (int i = 0; i < selectedFiles.size(); ++i) {
+			if (SensorDataCache.purge(selectedFiles.get(i))) {
+				purged++;
+			}
+		}
+		JOptionPane.showMessageDialog(this, INFO_PURGED_CACHE + purged);
+	}
+	
 	/**
 	 * Returns the currently selected file. If no file is selected, null is returned. If
 	 * the sequential file is checked return the list of files.
@@ -105,11 +169,14 @@ public class FileSelectionPanel extends JPanel implements ActionListener
 			}
 			String fileName = filePath.substring(filePath.lastIndexOf("\\") + 1);
 			String fileNameTruncated = fileName.substring(0, fileName.lastIndexOf("-"));
-			String fileExtension = fileName.substring(fileName.lastIndexOf("."));
+			/** The extension starts after the number so "file-1.txt.gz" keeps ".txt.gz" **/
+			int extensionIndex = fileName.indexOf(".", fileName.lastIndexOf("-"));
+			String fileExtension = fileName.substring(extensionIndex);
+			String uncompressedExtension = SensorDataParser.stripCompressedExtension(fileExtension);
 			String folderPath = 
 					filePath.substring(0, filePath.length() - fileName.length());
 			String fileNumberString = fileName.substring(
-					fileName.lastIndexOf("-") + 1, fileName.lastIndexOf("."));
+					fileName.lastIndexOf("-") + 1, extensionIndex);
 			/** +1 to get the next file number **/
 			int fileNumber = Integer.parseInt(fileNumberString) + 1;
 			
@@ -118,6 +185,16 @@ public class FileSelectionPanel extends JPanel implements ActionListener
 				String nextFilePath = folderPath + fileNameTruncated + "-" + i + 
 						fileExtension;
 				nextFile = new File(nextFilePath);
+				/** Files in the sequence may be archived with or without compression **/
+				if (!nextFile.canRead()) {
+					nextFile = new File(folderPath + fileNameTruncated + "-" + i +
+							uncompressedExtension);
+				}
+				for (int j = 0; j < SensorDataParser.COMPRESSED_EXTENSIONS.length &&
+						!nextFile.canRead(); ++j) {
+					nextFile = new File(folderPath + fileNameTruncated + "-" + i +
+							uncompressedExtension + SensorDataParser.COMPRESSED_EXTENSIONS[j]);
+				}
 				if (!nextFile.canRead()) {
 					System.err.println(nextFilePath + " not found.");
 				} else {
@@ -137,7 +214,7 @@ public class FileSelectionPanel extends JPanel implements ActionListener
 				selectedFiles.clear();
 				for (int i = 0; i < folderFiles.length; ++i) {
 					File file = folderFiles[i];
-					if (file.isFile()) {
+					if (file.isFile() && !SensorDataCache.isCacheFile(file)) {
 						selectedFiles.add(file);
 					}
 				}
@@ -158,4 +235,36 @@ public class FileSelectionPanel extends JPanel implements ActionListener
 	public boolean isFolderSelected() {
 		return mFolderCheckBox.isSelected();
 	}
+	
+	/**
+	 * Returns whether the selected file should be followed while it is being written.
+	 * @return Whether or not the follow checkbox is checked.
+	 */
+	public boolean isFollowSelected() {
+		return mFollowCheckBox.isSelected();
+	}
+	
+	/**
+	 * Returns whether the selected file should be opened in a zoomable viewer.
+	 * @return Whether or not the explore checkbox is checked.
+	 */
+	public boolean isExploreSelected() {
+		return mExploreCheckBox.isSelected();
+	}
+	
+	/**
+	 * Returns whether parsed data should be read from and written to the binary cache.
+	 * @return Whether or not the cache checkbox is checked.
+	 */
+	public boolean isCacheEnabled() {
+		return mCacheCheckBox.isSelected();
+	}
+	
+	/**
+	 * Returns whether parsed and normalized data should be stored outside of the heap.
+	 * @return Whether or not the off-heap checkbox is checked.
+	 */
+	public boolean isOffHeapEnabled() {
+		return mOffHeapCheckBox.isSelected();
+	}
 }
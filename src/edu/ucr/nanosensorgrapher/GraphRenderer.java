@@ -0,0 +1,539 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.font.TextAttribute;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.text.AttributedString;
+import java.text.DateFormat;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GraphRenderer draws the graph of an analyzed run with plain Java 2D calls, so it can
+ * draw into a {@link BufferedImage} without any Swing component or display. It is what
+ * {@link GraphPanel} paints with, and what the batch writes its images with, which also
+ * works under java.awt.headless=true. Each renderer should be used by one thread at a time.
+ *
+ * Everything but the data, the resistance labels, the initial resistance, the file name
+ * and the date only depends on the gas, its concentrations and the time and concentration
+ * axes, which the files of a batch share. That part is drawn once into a template image
+ * that is shared by every renderer, and each graph is drawn by copying the template and
+ * drawing the rest on top. Everything is drawn in black without antialiasing, so the order
+ * doesn't change the result, and the images are 1 bit, which is an eighth of the memory
+ * of an RGB image to draw into and copy, and is written as a 2 color PNG.
+ */
+public class GraphRenderer
+{
+	private static final int GRAPH_FONT_SIZE = 24;
+	private static final Font GRAPH_FONT = new Font("Arial", Font.PLAIN, GRAPH_FONT_SIZE);
+	
+	public static final int GRAPH_WIDTH = 1000;
+	public static final int GRAPH_HEIGHT = 1000;
+	private static final int GRAPH_AXIS_PADDING = 150;
+	private static final int GRAPH_MINOR_AXIS_TICK_SIZE = 10;
+	private static final int GRAPH_MAJOR_AXIS_TICK_SIZE = 15;
+	private static final int GRAPH_TIME_AXIS_TICKS = SensorDataProcessor.TIME_AXIS_TICKS;
+	private static final int GRAPH_CONCENTRATION_AXIS_TICKS = 4;
+	private static final int GRAPH_RESISTANCE_AXIS_TICKS = SensorDataProcessor.RESISTANCE_AXIS_TICKS;
+
+	private static final String GRAPH_TIME_AXIS_LABEL = "Time (mins)";
+	private static final String GRAPH_CONCENTRATION_AXIS_LABEL = " (ppm)";
+	private static final String GRAPH_RESISTANCE_AXIS_LABEL = "\u0394R/R0 (%)";
+	private static final String GRAPH_INITIAL_RESISTANCE_LABEL = "R0 = ";
+	private static final String GRAPH_INITIAL_RESISTANCE_OMEGA_SYMBOL = "\u03A9";
+	private static final String GRAPH_WAITING_FOR_BASELINE_LABEL = "Waiting for baseline (45 - 60 min), at ";
+	private static final String GRAPH_WAITING_FOR_BASELINE_UNITS = " min";
+	
+	/** Most templates kept before they are all dropped **/
+	private static final int MAX_TEMPLATES = 16;
+	/** The templates drawn so far, by {@link #getTemplateKey()} **/
+	private static final Map<String, BufferedImage> TEMPLATES =
+			new ConcurrentHashMap<String, BufferedImage>();
+	
+	/** The time ticks in minutes **/
+	private DoubleSeries mTime;
+	/** The normalized resistance values dR/R in percent **/
+	private DoubleSeries mNormalizedResistances;
+	/** Contains the concentration values in ppm */
+	private DoubleSeries mConcentrations;
+
+	/** The initial resistance as calculated by the average resistance from 45 - 60 min */
+	private double mInitialResistance;
+	
+	/** Axis label values **/
+	private double mResistanceAxis;
+	private double mMinResistance;
+	private double mMaxResistance;
+	private double mResistanceRange;
+	private double mConcentrationAxis;
+	private double mTimeAxis;
+	
+	private String mGasName;
+	private String mFileName;
+	
+	/** The analysis being drawn **/
+	private ProcessingResult mResult;
+	
+	/** Formats are kept since they are slow to create and each renderer has one thread **/
+	private final DecimalFormat mOneDecimalFormat = new DecimalFormat("0.0");
+	private final DecimalFormat mTwoDecimalFormat = new DecimalFormat("0.00");
+	private final DateFormat mDateFormat = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
+	
+	/** The resistance data as a polyline in pixels, see {@link Downsampler} **/
+	private int[] mPolylineX = new int[0];
+	private int[] mPolylineY = new int[0];
+	private int mPolylineCount;
+	/** The number of samples the polyline was built from, -1 if it has to be redone **/
+	private int mPolylineSize = -1;
+	
+
+	/**
+	 * Creates a renderer of an analyzed run.
+	 * 
+	 * @param result The analysis to draw.
+	 * @param fileName The name of the data file.
+	 */
+	public GraphRenderer(ProcessingResult result, String fileName) {
+		mFileName = fileName;
+		setResult(result);
+	}
+	
+	/**
+	 * Replaces the analysis being drawn, used in follow mode as the file grows.
+	 */
+	public void setResult(ProcessingResult result) {
+		mResult = result;
+		mTime = result.getTime();
+		mNormalizedResistances = result.getNormalizedResistances();
+		mConcentrations = result.getConcentrations();
+		mInitialResistance = result.getInitialResistance();
+		mResistanceAxis = result.getResistanceAxis();
+		mMinResistance = result.getMinResistance();
+		mMaxResistance = result.getMaxResistance();
+		mResistanceRange = result.getResistanceRange();
+		mConcentrationAxis = result.getConcentrationAxis();
+		mTimeAxis = result.getTimeAxis();
+		mGasName = result.getGasName();
+		mPolylineSize = -1;
+	}
+	
+	/**
+	 * Draws the graph into a new black and white image of {@link #GRAPH_WIDTH} by
+	 * {@link #GRAPH_HEIGHT}.
+	 */
+	public BufferedImage render() {
+		BufferedImage image = new BufferedImage(GRAPH_WIDTH, GRAPH_HEIGHT,
+				BufferedImage.TYPE_BYTE_BINARY);
+		Graphics2D g2d = image.createGraphics();
+		try {
+			if (mResult.isBaselineComplete()) {
+				/** The template has the same layout, so its bits can be copied as they are **/
+				byte[] template =
+						((DataBufferByte) getTemplate().getRaster().getDataBuffer()).getData();
+				byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+				System.arraycopy(template, 0, pixels, 0, pixels.length);
+				drawData(g2d);
+			} else {
+				draw(g2d);
+			}
+		} finally {
+			g2d.dispose();
+		}
+		return image;
+	}
+	
+	/**
+	 * Draws the graph over the area from (0, 0) to ({@link #GRAPH_WIDTH},
+	 * {@link #GRAPH_HEIGHT}).
+	 */
+	public void draw(Graphics g) {
+		if (!mResult.isBaselineComplete()) {
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, GRAPH_WIDTH, GRAPH_HEIGHT);
+			drawWaitingForBaseline(g);
+			return;
+		}
+		g.drawImage(getTemplate(), 0, 0, null);
+		drawData(g);
+	}
+	
+	/**
+	 * Draws the parts of the graph that aren't on the template.
+	 */
+	private void drawData(Graphics g) {
+		drawResistanceData(g);
+		drawResistanceLabels(g);
+		drawTitle(g);
+	}
+	
+	/**
+	 * Returns the template of the graph, drawing it if no renderer has yet.
+	 */
+	private BufferedImage getTemplate() {
+		String key = getTemplateKey();
+		BufferedImage template = TEMPLATES.get(key);
+		if (template != null) {
+			return template;
+		}
+		template = new BufferedImage(GRAPH_WIDTH, GRAPH_HEIGHT, BufferedImage.TYPE_BYTE_BINARY);
+		Graphics2D g2d = template.createGraphics();
+		try {
+			g2d.setColor(Color.WHITE);
+			g2d.fillRect(0, 0, GRAPH_WIDTH, GRAPH_HEIGHT);
+			drawExposureData(g2d);
+			drawAxis(g2d);
+		} finally {
+			g2d.dispose();
+		}
+		if (TEMPLATES.size() >= MAX_TEMPLATES) {
+			TEMPLATES.clear();
+		}
+		TEMPLATES.put(key, template);
+		return template;
+	}
+	
+	/**
+	 * Returns the values the template is drawn from.
+	 */
+	private String getTemplateKey() {
+		StringBuilder key = new StringBuilder(mGasName);
+		key.append('\t').append(mTimeAxis).append('\t').append(mConcentrationAxis);
+		for (int i = 0; i < mConcentrations.size(); ++i) {
+			key.append('\t').append(mConcentrations.get(i));
+		}
+		return key.toString();
+	}
+	
+	/**
+	 * Draws the message shown in follow mode until the initial resistance is known.
+	 * @param g
+	 */
+	private void drawWaitingForBaseline(Graphics g) {
+		g.setColor(Color.BLACK);
+		g.setFont(GRAPH_FONT);
+		FontMetrics fontMetric = g.getFontMetrics();
+		int fontHeight = fontMetric.getHeight();
+		g.drawString(mFileName, GRAPH_AXIS_PADDING, GRAPH_AXIS_PADDING - fontHeight / 2);
+		double lastTime = mTime.isEmpty() ? 0 : mTime.get(mTime.size() - 1);
+		String message = GRAPH_WAITING_FOR_BASELINE_LABEL + mOneDecimalFormat.format(lastTime) +
+				GRAPH_WAITING_FOR_BASELINE_UNITS;
+		int stringWidth = fontMetric.stringWidth(message);
+		g.drawString(message, (GRAPH_WIDTH - stringWidth) / 2, GRAPH_HEIGHT / 2);
+	}
+	
+	/**
+	 * Draws the time axis and labels
+	 * @param g
+	 */
+	private void drawTimeAxis(Graphics g) {
+		g.setColor(Color.BLACK);
+		/** Time axis bottom x-axis **/
+		g.drawLine(GRAPH_AXIS_PADDING,
+				GRAPH_HEIGHT - GRAPH_AXIS_PADDING,
+				GRAPH_WIDTH - GRAPH_AXIS_PADDING,
+				GRAPH_HEIGHT - GRAPH_AXIS_PADDING);
+		int graphWidth = GRAPH_WIDTH - 2 * GRAPH_AXIS_PADDING;
+		int tickSpacing = graphWidth / (GRAPH_TIME_AXIS_TICKS);
+		int timeSpacing = (int) (mTimeAxis / GRAPH_TIME_AXIS_TICKS);
+
+		g.setFont(GRAPH_FONT);
+		FontMetrics fontMetric = g.getFontMetrics();
+		int fontHeight = fontMetric.getHeight();
+
+		/** Time axis tick marks and labels **/
+		for (int i = 0; i < GRAPH_TIME_AXIS_TICKS + 1; ++i) {
+			int startX = GRAPH_AXIS_PADDING + i * tickSpacing;
+			int stopX = startX;
+			int startY = GRAPH_HEIGHT - GRAPH_AXIS_PADDING;
+			int stopY = startY - GRAPH_MINOR_AXIS_TICK_SIZE;
+			if (i % 2 == 0) {
+				stopY = startY - GRAPH_MAJOR_AXIS_TICK_SIZE;
+				int time = (int) timeSpacing * i;
+				String timeString = "" + time;
+				int stringWidth = fontMetric.stringWidth(timeString);
+				g.drawString(timeString,
+						startX - stringWidth / 2,
+						GRAPH_HEIGHT - GRAPH_AXIS_PADDING + fontHeight);
+			}
+			g.drawLine(startX, startY, stopX, stopY);
+		}
+		int stringWidth = fontMetric.stringWidth(GRAPH_TIME_AXIS_LABEL);
+		g.drawString(GRAPH_TIME_AXIS_LABEL,
+				(GRAPH_WIDTH - stringWidth) / 2,
+				GRAPH_HEIGHT - GRAPH_AXIS_PADDING + 2 * fontHeight); 
+	}
+	
+	/**
+	 * Draws the concentration axis and labels
+	 * @param g
+	 */
+	private void drawConcentrationAxis(Graphics g) {
+		g.setColor(Color.BLACK);
+		/** Concentration axis right side y-axis**/
+		g.drawLine(GRAPH_WIDTH - GRAPH_AXIS_PADDING,
+				GRAPH_AXIS_PADDING,
+				GRAPH_WIDTH - GRAPH_AXIS_PADDING,
+				GRAPH_HEIGHT - GRAPH_AXIS_PADDING);
+		int graphHeight = GRAPH_HEIGHT - 2 * GRAPH_AXIS_PADDING;
+		int tickSpacing = graphHeight / (GRAPH_CONCENTRATION_AXIS_TICKS + 1);
+		double concentrationSpacing = mConcentrationAxis / (GRAPH_CONCENTRATION_AXIS_TICKS + 1);
+
+		g.setFont(GRAPH_FONT);
+		FontMetrics fontMetric = g.getFontMetrics();
+		int fontHeight = fontMetric.getHeight();
+
+		for (int i = 0; i < GRAPH_CONCENTRATION_AXIS_TICKS + 1; ++i) {
+			int startX = GRAPH_WIDTH - GRAPH_AXIS_PADDING;
+			int stopX = startX - GRAPH_MINOR_AXIS_TICK_SIZE;
+			int startY = GRAPH_HEIGHT - GRAPH_AXIS_PADDING - i * tickSpacing;
+			int stopY = startY;
+			if (i % 2 == 0) {
+				stopX = startX - GRAPH_MAJOR_AXIS_TICK_SIZE;
+				double concentration = concentrationSpacing * i;
+				String concentrationString = "" + concentration;
+				g.drawString(concentrationString,
+						(int) (GRAPH_WIDTH - GRAPH_AXIS_PADDING + fontHeight / 2.0),
+						(int) (startY + fontHeight / 3.0));
+			}
+			g.drawLine(startX, startY, stopX, stopY);
+		}
+		
+		Graphics2D g2d = (Graphics2D) g;
+		AffineTransform originalTransform = g2d.getTransform();
+		g2d.setColor(Color.BLACK);
+		g2d.rotate(Math.toRadians(-90), GRAPH_HEIGHT / 2, GRAPH_WIDTH / 2);
+		String concentrationAxisLabel = mGasName + GRAPH_CONCENTRATION_AXIS_LABEL;
+		int stringWidth = fontMetric.stringWidth(concentrationAxisLabel);
+		g2d.drawString(concentrationAxisLabel,
+				(GRAPH_HEIGHT - stringWidth) / 2,
+				GRAPH_WIDTH - GRAPH_AXIS_PADDING + 3 * fontHeight);
+		g2d.setTransform(originalTransform);
+	}
+	
+	private void drawResistanceAxis(Graphics g) {
+		g.setColor(Color.BLACK);
+		/** Resistance axis left side y-axis **/
+		g.drawLine(GRAPH_AXIS_PADDING,
+				GRAPH_AXIS_PADDING,
+				GRAPH_AXIS_PADDING,
+				GRAPH_HEIGHT - GRAPH_AXIS_PADDING);
+				int graphHeight = GRAPH_HEIGHT - 2 * GRAPH_AXIS_PADDING;
+		int tickSpacing = graphHeight / (GRAPH_RESISTANCE_AXIS_TICKS);
+
+		g.setFont(GRAPH_FONT);
+		FontMetrics fontMetric = g.getFontMetrics();
+		int fontHeight = fontMetric.getHeight();
+
+		for (int i = 0; i < GRAPH_RESISTANCE_AXIS_TICKS; ++i) {
+			int startX = GRAPH_AXIS_PADDING;
+			int stopX = startX + GRAPH_MINOR_AXIS_TICK_SIZE;
+			int startY = GRAPH_HEIGHT - GRAPH_AXIS_PADDING - i * tickSpacing;
+			int stopY = startY;
+			if (i % 2 == 0) {
+				stopX = startX + GRAPH_MAJOR_AXIS_TICK_SIZE;
+			}
+			g.drawLine(startX, startY, stopX, stopY);
+		}
+		
+		Graphics2D g2d = (Graphics2D) g;
+		AffineTransform originalTransform = g2d.getTransform();
+		g2d.setColor(Color.BLACK);
+		g2d.rotate(Math.toRadians(-90), GRAPH_HEIGHT / 2, GRAPH_WIDTH / 2);
+		AttributedString as = new AttributedString(GRAPH_RESISTANCE_AXIS_LABEL);
+		as.addAttribute(TextAttribute.SUPERSCRIPT, TextAttribute.SUPERSCRIPT_SUB, 4, 6);
+		as.addAttribute(TextAttribute.SIZE, GRAPH_FONT_SIZE);
+		int stringWidth = fontMetric.stringWidth(GRAPH_RESISTANCE_AXIS_LABEL);
+		g2d.drawString(as.getIterator(),
+				(GRAPH_HEIGHT - stringWidth) / 2,
+				GRAPH_AXIS_PADDING - 3 * fontHeight);
+		g2d.setTransform(originalTransform);
+	}
+	
+	/**
+	 * Draws the resistance labels of the major ticks, which change with each file.
+	 * @param g
+	 */
+	private void drawResistanceLabels(Graphics g) {
+		g.setColor(Color.BLACK);
+		int graphHeight = GRAPH_HEIGHT - 2 * GRAPH_AXIS_PADDING;
+		int tickSpacing = graphHeight / (GRAPH_RESISTANCE_AXIS_TICKS);
+		mResistanceRange = mMaxResistance - mMinResistance;
+		double resistanceSpacing = mResistanceRange / (GRAPH_RESISTANCE_AXIS_TICKS);
+		DecimalFormat df = resistanceSpacing < 1 ? mTwoDecimalFormat : mOneDecimalFormat;
+
+		g.setFont(GRAPH_FONT);
+		FontMetrics fontMetric = g.getFontMetrics();
+		int fontHeight = fontMetric.getHeight();
+
+		for (int i = 0; i < GRAPH_RESISTANCE_AXIS_TICKS; i += 2) {
+			int startY = GRAPH_HEIGHT - GRAPH_AXIS_PADDING - i * tickSpacing;
+			double resistance = mMinResistance + resistanceSpacing * i;
+			String resistanceString = df.format(resistance);
+			int stringWidth = fontMetric.stringWidth(resistanceString);
+			g.drawString(resistanceString,
+					(int) (GRAPH_AXIS_PADDING - stringWidth - fontHeight / 2.0),
+					(int) (startY + fontHeight / 3.0));
+		}
+	}
+	
+	/**
+	 * Draws the axis and their labels on the template.
+	 * @param g
+	 */
+	private void drawAxis(Graphics g) {
+		drawTimeAxis(g);
+		drawConcentrationAxis(g);
+		drawResistanceAxis(g);
+		
+		/** Top bar **/
+		g.drawLine(GRAPH_AXIS_PADDING,
+				GRAPH_AXIS_PADDING,
+				GRAPH_WIDTH - GRAPH_AXIS_PADDING,
+				GRAPH_AXIS_PADDING);
+	}
+	
+	/**
+	 * Draws the file name and the date above the graph.
+	 * @param g
+	 */
+	private void drawTitle(Graphics g) {
+		g.setColor(Color.BLACK);
+		g.setFont(GRAPH_FONT);
+		FontMetrics fontMetric = g.getFontMetrics();
+		int fontHeight = fontMetric.getHeight();
+		g.drawString(mFileName, GRAPH_AXIS_PADDING, GRAPH_AXIS_PADDING - fontHeight / 2);
+		Calendar calendar = Calendar.getInstance();
+		String date = mDateFormat.format(calendar.getTime());
+		int stringWidth = fontMetric.stringWidth(date);
+		g.drawString(date,
+				GRAPH_WIDTH - GRAPH_AXIS_PADDING - stringWidth,
+				GRAPH_AXIS_PADDING - fontHeight / 2);
+	}
+	
+	/**
+	 * Draws the resistance data and initial resistance label
+	 * @param g
+	 */
+	private void drawResistanceData(Graphics g) {
+		g.setColor(Color.BLACK);
+		g.setFont(GRAPH_FONT);
+		FontMetrics fontMetric = g.getFontMetrics();
+		int fontHeight = fontMetric.getHeight();
+		DecimalFormat df = mTwoDecimalFormat;
+
+		String initialResistance = GRAPH_INITIAL_RESISTANCE_LABEL;
+		if (mInitialResistance > 1000) {
+			initialResistance += df.format(mInitialResistance / 1000) + "k" +
+					GRAPH_INITIAL_RESISTANCE_OMEGA_SYMBOL;
+		} else {
+			initialResistance += df.format(mInitialResistance) +
+					GRAPH_INITIAL_RESISTANCE_OMEGA_SYMBOL;
+		}
+
+		AttributedString as = new AttributedString(initialResistance);
+		as.addAttribute(TextAttribute.SUPERSCRIPT, TextAttribute.SUPERSCRIPT_SUB, 1, 2);
+		as.addAttribute(TextAttribute.SIZE, GRAPH_FONT_SIZE);
+		if (mResistanceAxis < 0) {
+			g.drawString(as.getIterator(),
+					(int) (GRAPH_AXIS_PADDING + fontHeight * 2),
+					(int) (GRAPH_HEIGHT - GRAPH_AXIS_PADDING - fontHeight * 2));
+		} else {
+			g.drawString(as.getIterator(),
+					(int) (GRAPH_AXIS_PADDING + fontHeight * 2),
+					(int) (GRAPH_AXIS_PADDING + fontHeight * 2));
+		}
+		/** Up to the first sample past the time axis, which the last line is drawn to **/
+		int size = Math.min(findFirstAfter(mTime, mTimeAxis) + 1, mTime.size());
+		size = Math.min(size, mNormalizedResistances.size());
+		if (size != mPolylineSize) {
+			buildPolyline(size);
+		}
+		g.drawPolyline(mPolylineX, mPolylineY, mPolylineCount);
+	}
+	
+	/**
+	 * Maps the first size samples to pixels, collapsing those that fall in the same pixel
+	 * column, so the polyline has at most a few points per column of the graph.
+	 */
+	private void buildPolyline(int size) {
+		mPolylineCount = 0;
+		mPolylineSize = size;
+		if (size == 0) {
+			return;
+		}
+		double xScale = (GRAPH_WIDTH - 2 * GRAPH_AXIS_PADDING) / mTimeAxis;
+		double yScale = -(GRAPH_HEIGHT - 2 * GRAPH_AXIS_PADDING) / mResistanceRange;
+		double yOffset = GRAPH_AXIS_PADDING - mMaxResistance * yScale;
+		/** Counted rather than taken from the end points, since the time can go backwards **/
+		int capacity = Downsampler.POINTS_PER_COLUMN * Downsampler.countColumns(mTime,
+				mNormalizedResistances, size, xScale, GRAPH_AXIS_PADDING);
+		if (mPolylineX.length < capacity) {
+			mPolylineX = new int[capacity];
+			mPolylineY = new int[capacity];
+		}
+		mPolylineCount = Downsampler.collapseColumns(mTime, mNormalizedResistances, size,
+				xScale, GRAPH_AXIS_PADDING, yScale, yOffset, mPolylineX, mPolylineY);
+	}
+	
+	/**
+	 * Returns the index of the first sample whose time is greater than the passed in time,
+	 * or the number of samples if there is none.
+	 */
+	private static int findFirstAfter(DoubleSeries time, double boundary) {
+		int low = 0;
+		int high = time.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (time.get(middle) <= boundary) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * Draws the bars for exposure
+	 * @param g
+	 */
+	private void drawExposureData(Graphics g) {
+		g.setColor(Color.BLACK);
+		for (int i = 0; i < mConcentrations.size(); ++i) {
+			double exposureStart = SensorDataProcessor.DURATION_BASELINE +
+					i * SensorDataProcessor.DURATION_EXPOSURE + i * SensorDataProcessor.DURATION_RECOVERY;
+			double exposureEnd = exposureStart + SensorDataProcessor.DURATION_EXPOSURE;
+			double concentration = mConcentrations.get(i);
+
+			double startX = (exposureStart / mTimeAxis) *
+					(GRAPH_WIDTH - 2 * GRAPH_AXIS_PADDING) + GRAPH_AXIS_PADDING;
+			double endX = (exposureEnd / mTimeAxis) *
+					(GRAPH_WIDTH - 2 * GRAPH_AXIS_PADDING) + GRAPH_AXIS_PADDING;
+			
+			double startY = (GRAPH_HEIGHT - GRAPH_AXIS_PADDING);
+			double endY = (GRAPH_HEIGHT - GRAPH_AXIS_PADDING) - 
+						(concentration / mConcentrationAxis) *
+						(GRAPH_HEIGHT - 2 * GRAPH_AXIS_PADDING);
+
+			/** Left bar line **/
+			g.drawLine((int) startX, (int) startY, (int) startX, (int) endY);
+			/** Top bar line **/
+			g.drawLine((int) startX, (int) endY, (int) endX, (int) endY);
+			/** Right bar line **/
+			g.drawLine((int) endX, (int) startY, (int) endX, (int) endY);
+		}
+	}
+	
+	public ProcessingResult getResult() {
+		return mResult;
+	}
+}
@@ -0,0 +1,363 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+
+import javax.swing.JPanel;
+
+/**
+ * GraphViewer is a JPanel that lets an analyzed run be explored: the mouse wheel zooms in
+ * and out around the pointer, dragging pans and a double click shows the whole run again.
+ * The resistance axis is fitted to the data in view.
+ *
+ * The data is drawn from a {@link MinMaxPyramid} built when the viewer is created. For
+ * the range in view the level whose buckets are no wider than a pixel column is picked,
+ * and the smallest and largest value of each column are drawn as a vertical line, so a
+ * redraw reads about as many buckets as the plot is wide however many samples are in view.
+ */
+public class GraphViewer extends JPanel
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final int VIEWER_WIDTH = 1000;
+	private static final int VIEWER_HEIGHT = 600;
+	private static final int VIEWER_PADDING = 80;
+	private static final int VIEWER_FONT_SIZE = 16;
+	private static final int VIEWER_TICK_SIZE = 8;
+	private static final int VIEWER_TIME_AXIS_TICKS = 10;
+	private static final int VIEWER_RESISTANCE_AXIS_TICKS = 8;
+	private static final Color VIEWER_EXPOSURE_COLOR = new Color(230, 230, 230);
+
+	/** Change of the time range in view per notch of the mouse wheel **/
+	private static final double ZOOM_STEP = 1.25;
+	/** Smallest time range that can be zoomed in to in minutes **/
+	private static final double MIN_VIEW_SPAN = 0.05;
+
+	private static final String VIEWER_TIME_AXIS_LABEL = "Time (mins)";
+	private static final String VIEWER_RESISTANCE_AXIS_LABEL = "\u0394R/R0 (%)";
+
+	private final DoubleSeries mTime;
+	private final DoubleSeries mNormalizedResistances;
+	private final MinMaxPyramid mPyramid;
+	private final int mExposures;
+	private final String mFileName;
+
+	/** The time range of the whole run in minutes **/
+	private final double mStartTime;
+	private final double mEndTime;
+	/** The time range in view in minutes **/
+	private double mViewStart;
+	private double mViewEnd;
+
+	/** The smallest and largest value of each pixel column in view **/
+	private double[] mColumnMins = new double[0];
+	private double[] mColumnMaxs = new double[0];
+
+	/** Where the current drag started and the view start at that point **/
+	private int mDragX;
+	private double mDragViewStart;
+
+	/**
+	 * Creates a viewer of an analyzed run. The time and normalized resistances of the
+	 * result have to stay allocated for as long as the viewer is shown.
+	 *
+	 * @param result The analysis to draw.
+	 * @param fileName The name of the data file.
+	 */
+	public GraphViewer(ProcessingResult result, String fileName) {
+		super();
+		super.setPreferredSize(new Dimension(VIEWER_WIDTH, VIEWER_HEIGHT));
+		super.setBackground(Color.WHITE);
+
+		mTime = result.getTime();
+		mNormalizedResistances = result.getNormalizedResistances();
+		mPyramid = new MinMaxPyramid(mNormalizedResistances);
+		mExposures = result.getConcentrations().size();
+		mFileName = fileName;
+		mStartTime = mTime.isEmpty() ? 0 : mTime.get(0);
+		mEndTime = mTime.isEmpty() ? 0 : mTime.get(mTime.size() - 1);
+		mViewStart = mStartTime;
+		mViewEnd = mEndTime;
+
+		MouseAdapter mouseAdapter = new MouseAdapter()
+		{
+			@Override
+			public void mousePressed(MouseEvent event) {
+				mDragX = event.getX();
+				mDragViewStart = mViewStart;
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent event) {
+				double span = mViewEnd - mViewStart;
+				double shift = (mDragX - event.getX()) * span / getPlotWidth();
+				setView(mDragViewStart + shift, mDragViewStart + shift + span);
+			}
+
+			@Override
+			public void mouseClicked(MouseEvent event) {
+				if (event.getClickCount() == 2) {
+					setView(mStartTime, mEndTime);
+				}
+			}
+
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent event) {
+				double scale = Math.pow(ZOOM_STEP, event.getPreciseWheelRotation());
+				double span = mViewEnd - mViewStart;
+				double newSpan = Math.max(span * scale, MIN_VIEW_SPAN);
+				/** Keep the time under the pointer where it is **/
+				double fraction = (event.getX() - VIEWER_PADDING) / (double) getPlotWidth();
+				fraction = Math.max(0, Math.min(1, fraction));
+				double pointerTime = mViewStart + fraction * span;
+				setView(pointerTime - fraction * newSpan,
+						pointerTime - fraction * newSpan + newSpan);
+			}
+		};
+		super.addMouseListener(mouseAdapter);
+		super.addMouseMotionListener(mouseAdapter);
+		super.addMouseWheelListener(mouseAdapter);
+	}
+
+	/**
+	 * Shows the passed in time range, moved and shortened to fit in the run.
+	 */
+	private void setView(double start, double end) {
+		double span = Math.min(end - start, mEndTime - mStartTime);
+		if (start < mStartTime) {
+			start = mStartTime;
+		} else if (start + span > mEndTime) {
+			start = mEndTime - span;
+		}
+		mViewStart = start;
+		mViewEnd = start + span;
+		repaint();
+	}
+
+	private int getPlotWidth() {
+		return Math.max(1, getWidth() - 2 * VIEWER_PADDING);
+	}
+
+	private int getPlotHeight() {
+		return Math.max(1, getHeight() - 2 * VIEWER_PADDING);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		g.setColor(getBackground());
+		g.fillRect(0, 0, getWidth(), getHeight());
+		g.setFont(new Font("Arial", Font.PLAIN, VIEWER_FONT_SIZE));
+		if (mTime.isEmpty() || mViewEnd <= mViewStart) {
+			return;
+		}
+		double[] range = findColumns();
+		if (range[0] > range[1]) {
+			range[0] = 0;
+			range[1] = 0;
+		}
+		/** A little room above and below the data in view **/
+		double margin = (range[1] - range[0]) / 20;
+		if (margin == 0) {
+			margin = 1;
+		}
+		double minResistance = range[0] - margin;
+		double maxResistance = range[1] + margin;
+		drawExposureData(g);
+		drawResistanceData(g, minResistance, maxResistance);
+		drawAxis(g, minResistance, maxResistance);
+	}
+
+	/**
+	 * Finds the smallest and largest value of each pixel column in view from the level of
+	 * the pyramid whose buckets fit in a column. The first and last buckets can reach
+	 * outside the view, so their samples are read from level 0 and clipped to it, and a
+	 * spike just out of view doesn't stretch the resistance axis.
+	 *
+	 * @return The smallest and largest value in view.
+	 */
+	private double[] findColumns() {
+		int columns = getPlotWidth();
+		if (mColumnMins.length != columns) {
+			mColumnMins = new double[columns];
+			mColumnMaxs = new double[columns];
+		}
+		Arrays.fill(mColumnMins, Double.POSITIVE_INFINITY);
+		Arrays.fill(mColumnMaxs, Double.NEGATIVE_INFINITY);
+
+		int from = findFirst(mViewStart);
+		int to = Math.min(mTime.size(), findFirst(mViewEnd) + 1);
+		if (from >= to) {
+			return new double[] {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		}
+		int level = mPyramid.getLevel((to - from) / columns);
+		int firstBucket = MinMaxPyramid.getBucket(level, from);
+		int lastBucket = MinMaxPyramid.getBucket(level, to - 1);
+		double span = mViewEnd - mViewStart;
+		double[] range = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		for (int bucket = firstBucket; bucket <= lastBucket; ++bucket) {
+			int start = MinMaxPyramid.getBucketStart(level, bucket);
+			int end = MinMaxPyramid.getBucketStart(level, bucket + 1);
+			if (start < from || end > to) {
+				int stop = Math.min(end, to);
+				for (int i = Math.max(start, from); i < stop; ++i) {
+					addToColumn(mTime.get(i), span, mPyramid.getMin(0, i), mPyramid.getMax(0, i),
+							range);
+				}
+			} else {
+				addToColumn(mTime.get(start), span, mPyramid.getMin(level, bucket),
+						mPyramid.getMax(level, bucket), range);
+			}
+		}
+		return range;
+	}
+
+	/**
+	 * Adds the smallest and largest value of a bucket to the pixel column of its first
+	 * sample and to the range in view.
+	 */
+	private void addToColumn(double time, double span, double min, double max,
+			double[] range) {
+		int columns = mColumnMins.length;
+		/** The last sample is past the end of the view, where its line is drawn to **/
+		int column = (int) ((time - mViewStart) / span * columns);
+		column = Math.max(0, Math.min(columns - 1, column));
+		mColumnMins[column] = min < mColumnMins[column] ? min : mColumnMins[column];
+		mColumnMaxs[column] = max > mColumnMaxs[column] ? max : mColumnMaxs[column];
+		range[0] = min < range[0] ? min : range[0];
+		range[1] = max > range[1] ? max : range[1];
+	}
+
+	/**
+	 * Returns the index of the first sample at or after the passed in time.
+	 */
+	private int findFirst(double time) {
+		int low = 0;
+		int high = mTime.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (mTime.get(middle) < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private int toY(double resistance, double minResistance, double maxResistance) {
+		return (int) ((maxResistance - resistance) / (maxResistance - minResistance) *
+				getPlotHeight() + VIEWER_PADDING);
+	}
+
+	private int toX(double time) {
+		return (int) ((time - mViewStart) / (mViewEnd - mViewStart) * getPlotWidth() +
+				VIEWER_PADDING);
+	}
+
+	/**
+	 * Draws the exposures in view as shaded bands behind the data.
+	 * @param g
+	 */
+	private void drawExposureData(Graphics g) {
+		g.setColor(VIEWER_EXPOSURE_COLOR);
+		for (int i = 0; i < mExposures; ++i) {
+			double exposureStart = Math.max(PhaseIndex.getExposureStartTime(i), mViewStart);
+			double exposureEnd = Math.min(PhaseIndex.getExposureStartTime(i) +
+					SensorDataProcessor.DURATION_EXPOSURE, mViewEnd);
+			if (exposureStart < exposureEnd) {
+				int startX = toX(exposureStart);
+				g.fillRect(startX, VIEWER_PADDING, toX(exposureEnd) - startX,
+						getPlotHeight());
+			}
+		}
+	}
+
+	/**
+	 * Draws the smallest to the largest value of each column, joined to the column before
+	 * it with data.
+	 * @param g
+	 */
+	private void drawResistanceData(Graphics g, double minResistance, double maxResistance) {
+		g.setColor(Color.BLACK);
+		int previousColumn = -1;
+		for (int column = 0; column < mColumnMins.length; ++column) {
+			double min = mColumnMins[column];
+			double max = mColumnMaxs[column];
+			if (min > max) {
+				continue;
+			}
+			int x = column + VIEWER_PADDING;
+			if (previousColumn >= 0) {
+				double previousMin = mColumnMins[previousColumn];
+				double previousMax = mColumnMaxs[previousColumn];
+				if (previousColumn == column - 1) {
+					/** Stretch the line to the column before so steps don't leave gaps **/
+					min = Math.min(min, previousMax);
+					max = Math.max(max, previousMin);
+				} else {
+					g.drawLine(previousColumn + VIEWER_PADDING,
+							toY((previousMin + previousMax) / 2, minResistance, maxResistance),
+							x, toY((mColumnMins[column] + mColumnMaxs[column]) / 2,
+									minResistance, maxResistance));
+				}
+			}
+			g.drawLine(x, toY(max, minResistance, maxResistance),
+					x, toY(min, minResistance, maxResistance));
+			previousColumn = column;
+		}
+	}
+
+	/**
+	 * Draws the frame of the plot with the time and resistance of the range in view.
+	 * @param g
+	 */
+	private void drawAxis(Graphics g, double minResistance, double maxResistance) {
+		g.setColor(Color.BLACK);
+		int plotWidth = getPlotWidth();
+		int plotHeight = getPlotHeight();
+		g.drawRect(VIEWER_PADDING, VIEWER_PADDING, plotWidth, plotHeight);
+		FontMetrics fontMetric = g.getFontMetrics();
+		int fontHeight = fontMetric.getHeight();
+		int bottom = VIEWER_PADDING + plotHeight;
+
+		double timeSpacing = (mViewEnd - mViewStart) / VIEWER_TIME_AXIS_TICKS;
+		DecimalFormat timeFormat = new DecimalFormat(timeSpacing < 1 ? "0.00" : "0.0");
+		for (int i = 0; i <= VIEWER_TIME_AXIS_TICKS; ++i) {
+			double time = mViewStart + timeSpacing * i;
+			int x = toX(time);
+			g.drawLine(x, bottom, x, bottom - VIEWER_TICK_SIZE);
+			String timeString = timeFormat.format(time);
+			g.drawString(timeString, x - fontMetric.stringWidth(timeString) / 2,
+					bottom + fontHeight);
+		}
+		g.drawString(VIEWER_TIME_AXIS_LABEL,
+				VIEWER_PADDING + (plotWidth - fontMetric.stringWidth(VIEWER_TIME_AXIS_LABEL)) / 2,
+				bottom + 2 * fontHeight);
+
+		double resistanceSpacing = (maxResistance - minResistance) / VIEWER_RESISTANCE_AXIS_TICKS;
+		DecimalFormat resistanceFormat = new DecimalFormat(resistanceSpacing < 1 ? "0.00" : "0.0");
+		for (int i = 0; i <= VIEWER_RESISTANCE_AXIS_TICKS; ++i) {
+			double resistance = minResistance + resistanceSpacing * i;
+			int y = toY(resistance, minResistance, maxResistance);
+			g.drawLine(VIEWER_PADDING, y, VIEWER_PADDING + VIEWER_TICK_SIZE, y);
+			String resistanceString = resistanceFormat.format(resistance);
+			g.drawString(resistanceString,
+					VIEWER_PADDING - fontMetric.stringWidth(resistanceString) - fontHeight / 2,
+					y + fontHeight / 3);
+		}
+		g.drawString(VIEWER_RESISTANCE_AXIS_LABEL, VIEWER_PADDING / 4,
+				VIEWER_PADDING - fontHeight);
+		g.drawString(mFileName,
+				VIEWER_PADDING + plotWidth - fontMetric.stringWidth(mFileName),
+				VIEWER_PADDING - fontHeight / 2);
+	}
+}
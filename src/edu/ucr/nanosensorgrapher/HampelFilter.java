@@ -0,0 +1,271 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.Arrays;
+
+/**
+ * HampelFilter replaces values that are too far from the median of the samples around
+ * them. Unlike the per phase outlier modes, the median and median absolute deviation
+ * (MAD) are taken over a window centered on each sample, so a slow drift inside a long
+ * phase neither hides real spikes nor flags good data.
+ *
+ * Every value of the series is ranked once up front, and the window is kept in a Fenwick
+ * tree of rank counts as it slides, so the median is an order statistic lookup and
+ * counting the window values in a range is two more. Whether a value is an outlier mostly
+ * comes down to one such count; the MAD itself is found, when it is needed, by a binary
+ * search over the sorted distances below and above the median without listing them. A
+ * pass costs O(n log n) no matter how wide the window is.
+ */
+public class HampelFilter
+{
+	private HampelFilter() {
+	}
+
+	/**
+	 * Replaces each value that is more than threshold scaled MADs from the median of the
+	 * window centered on it with the value before it, the same as the per phase modes.
+	 * The window is cut short at both ends of the series. The median and MAD are always
+	 * taken from the original values.
+	 *
+	 * @param values The series to filter in place.
+	 * @param window The number of samples in the window, rounded up to an odd number.
+	 * @param threshold The number of scaled MADs allowed before a value is an outlier.
+	 * @return The number of values that were changed.
+	 */
+	public static int apply(DoubleSeries values, int window, double threshold) {
+		int size = values.size();
+		int halfWidth = window / 2;
+		if (size < 2 || halfWidth < 1) {
+			return 0;
+		}
+
+		/** Rank every value, equal values sharing a rank **/
+		double[] sorted = values.toArray();
+		Arrays.sort(sorted);
+		int unique = 1;
+		for (int i = 1; i < size; ++i) {
+			if (Double.compare(sorted[i], sorted[unique - 1]) != 0) {
+				sorted[unique++] = sorted[i];
+			}
+		}
+		int[] ranks = new int[size];
+		for (int i = 0; i < size; ++i) {
+			ranks[i] = Arrays.binarySearch(sorted, 0, unique, values.get(i));
+		}
+
+		RankedWindow rankedWindow = new RankedWindow(sorted, unique);
+		for (int i = 0; i < halfWidth && i < size; ++i) {
+			rankedWindow.add(ranks[i]);
+		}
+		int replaced = 0;
+		for (int i = 0; i < size; ++i) {
+			int leaving = i - halfWidth - 1;
+			if (leaving >= 0) {
+				rankedWindow.remove(ranks[leaving]);
+			}
+			int entering = i + halfWidth;
+			if (entering < size) {
+				rankedWindow.add(ranks[entering]);
+			}
+			if (isOutlier(rankedWindow, sorted[ranks[i]], threshold)) {
+				double replacement = values.get(i > 0 ? i - 1 : i + 1);
+				if (Double.compare(replacement, values.get(i)) != 0) {
+					values.set(i, replacement);
+					replaced++;
+				}
+			}
+		}
+		return replaced;
+	}
+
+	/**
+	 * Creates a stage that filters a series as {@link #apply(DoubleSeries, int, double)}
+	 * does, up to passes times, stopping once a pass changes nothing. The filter ranks the
+	 * whole series up front, so it runs as a global stage.
+	 */
+	public static ProcessingStage createStage(final int window, final double threshold,
+			final int passes) {
+		return new ProcessingStage(ProcessingStage.Kind.GLOBAL)
+		{
+			@Override
+			public void prepare(DoubleSeries values) {
+				for (int pass = 0; pass < passes; ++pass) {
+					if (apply(values, window, threshold) == 0) {
+						break;
+					}
+				}
+			}
+
+			@Override
+			public void process(DoubleSeries values, int from, int to) {
+			}
+		};
+	}
+
+	/**
+	 * Returns whether value is more than threshold scaled MADs from the median of the
+	 * window. Rather than finding the MAD, this mostly counts the window values closer to
+	 * the median than the largest MAD that would make value an outlier: the MAD is below
+	 * that distance exactly when more than half of the values are. The MAD is only found
+	 * when the two middle distances of an even window fall on either side of it.
+	 */
+	private static boolean isOutlier(RankedWindow window, double value, double threshold) {
+		int count = window.getCount();
+		int lowerMiddle = (count - 1) / 2;
+		int upperMiddle = count / 2;
+		double median = window.get(lowerMiddle);
+		if (upperMiddle != lowerMiddle) {
+			median = (median + window.get(upperMiddle)) / 2;
+		}
+		double deviation = Math.abs(value - median);
+		if (deviation == 0) {
+			return false;
+		}
+
+		double limit = deviation / (threshold * SensorDataProcessor.MAD_TO_STD);
+		int closer = window.countBelow(median + limit) - window.countUpTo(median - limit);
+		if (closer <= lowerMiddle) {
+			return false;
+		}
+		if (closer <= upperMiddle && !(deviation / (findMedianDistance(window, median) *
+				SensorDataProcessor.MAD_TO_STD) > threshold)) {
+			return false;
+		}
+		/** Most of the window is a single value, there is no spread to measure **/
+		return window.countUpTo(median) - window.countBelow(median) <= upperMiddle;
+	}
+
+	/**
+	 * Finds the median distance of the window values from the median. The values at or
+	 * below the median give distances that increase going down from the median, and the
+	 * values above it give distances that increase going up, so the distances are the
+	 * merge of two sorted lists.
+	 */
+	private static double findMedianDistance(RankedWindow window, double median) {
+		int count = window.getCount();
+		int below = window.countUpTo(median);
+		double lower = findDistance(window, median, below, (count - 1) / 2);
+		if (count % 2 == 1) {
+			return lower;
+		}
+		return (lower + findDistance(window, median, below, count / 2)) / 2;
+	}
+
+	/**
+	 * Finds the k-th (0 based) smallest distance from the median by finding how many of
+	 * the k + 1 smallest distances come from below the median.
+	 *
+	 * @param below The number of window values at or below the median.
+	 */
+	private static double findDistance(RankedWindow window, double median, int below,
+			int k) {
+		int above = window.getCount() - below;
+		int low = Math.max(0, k + 1 - above);
+		int high = Math.min(k + 1, below);
+		while (low < high) {
+			int fromBelow = (low + high) >>> 1;
+			if (median - window.get(below - 1 - fromBelow) <
+					window.get(below + k - fromBelow) - median) {
+				low = fromBelow + 1;
+			} else {
+				high = fromBelow;
+			}
+		}
+		double distance = 0;
+		if (low > 0) {
+			distance = median - window.get(below - low);
+		}
+		if (low <= k) {
+			distance = Math.max(distance, window.get(below + k - low) - median);
+		}
+		return distance;
+	}
+
+	/**
+	 * The values in the window, kept as counts of their ranks in a Fenwick tree. Finding
+	 * the k-th smallest value and counting the values below a value both walk down the
+	 * tree once, in O(log ranks).
+	 */
+	private static class RankedWindow
+	{
+		/** Every distinct value of the series in increasing order, indexed by rank **/
+		private final double[] mValues;
+		private final int[] mTree;
+		/** Highest power of two no greater than the number of ranks **/
+		private final int mTopBit;
+		private int mCount;
+
+		public RankedWindow(double[] values, int ranks) {
+			mValues = values;
+			mTree = new int[ranks + 1];
+			mTopBit = Integer.highestOneBit(ranks);
+		}
+
+		public int getCount() {
+			return mCount;
+		}
+
+		public void add(int rank) {
+			update(rank, 1);
+		}
+
+		public void remove(int rank) {
+			update(rank, -1);
+		}
+
+		private void update(int rank, int delta) {
+			mCount += delta;
+			for (int i = rank + 1; i < mTree.length; i += i & -i) {
+				mTree[i] += delta;
+			}
+		}
+
+		/**
+		 * Returns the k-th (0 based) smallest value.
+		 */
+		public double get(int k) {
+			int index = 0;
+			int remaining = k + 1;
+			for (int bit = mTopBit; bit > 0; bit >>= 1) {
+				int next = index + bit;
+				if (next < mTree.length && mTree[next] < remaining) {
+					index = next;
+					remaining -= mTree[next];
+				}
+			}
+			return mValues[index];
+		}
+
+		/**
+		 * Returns the number of values less than value.
+		 */
+		public int countBelow(double value) {
+			int index = 0;
+			int count = 0;
+			for (int bit = mTopBit; bit > 0; bit >>= 1) {
+				int next = index + bit;
+				/** Node next covers ranks up to next - 1 **/
+				if (next < mTree.length && mValues[next - 1] < value) {
+					index = next;
+					count += mTree[next];
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Returns the number of values no greater than value.
+		 */
+		public int countUpTo(double value) {
+			int index = 0;
+			int count = 0;
+			for (int bit = mTopBit; bit > 0; bit >>= 1) {
+				int next = index + bit;
+				if (next < mTree.length && mValues[next - 1] <= value) {
+					index = next;
+					count += mTree[next];
+				}
+			}
+			return count;
+		}
+	}
+}
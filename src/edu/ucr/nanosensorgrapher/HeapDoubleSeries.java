@@ -0,0 +1,109 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.Arrays;
+
+/**
+ * HeapDoubleSeries is a {@link DoubleSeries} backed by a double[] on the Java heap.
+ */
+class HeapDoubleSeries extends DoubleSeries
+{
+	private double[] mValues;
+	/** Index in mValues of the first value, non zero for slices **/
+	private int mOffset;
+	private int mSize;
+	/** Slices share mValues with their parent so they can't grow **/
+	private final boolean mSlice;
+
+	HeapDoubleSeries(double[] values, int offset, int size, boolean slice) {
+		mValues = values;
+		mOffset = offset;
+		mSize = size;
+		mSlice = slice;
+	}
+
+	@Override
+	public int size() {
+		return mSize;
+	}
+
+	@Override
+	public double get(int index) {
+		return mValues[mOffset + index];
+	}
+
+	@Override
+	public void set(int index, double value) {
+		mValues[mOffset + index] = value;
+	}
+
+	@Override
+	public void add(double value) {
+		if (mSlice || mSize == mValues.length) {
+			ensureCapacity(mSize + 1);
+		}
+		mValues[mSize++] = value;
+	}
+
+	@Override
+	public void addAll(DoubleSeries series) {
+		int length = series.size();
+		ensureCapacity(mSize + length);
+		series.get(0, mValues, mSize, length);
+		mSize += length;
+	}
+
+	@Override
+	public void ensureCapacity(int capacity) {
+		if (mSlice) {
+			throw (new UnsupportedOperationException("A slice can't grow"));
+		}
+		if (capacity > mValues.length) {
+			int newCapacity = Math.max(capacity, mValues.length + (mValues.length >> 1));
+			mValues = Arrays.copyOf(mValues, newCapacity);
+		}
+	}
+
+	@Override
+	public void clear() {
+		if (mSlice) {
+			throw (new UnsupportedOperationException("A slice can't be cleared"));
+		}
+		mSize = 0;
+	}
+
+	@Override
+	public DoubleSeries slice(int from, int to) {
+		checkSlice(from, to, mSize);
+		return new HeapDoubleSeries(mValues, mOffset + from, to - from, true);
+	}
+
+	@Override
+	public void get(int index, double[] destination, int destinationIndex, int length) {
+		System.arraycopy(mValues, mOffset + index, destination, destinationIndex, length);
+	}
+
+	@Override
+	public void set(int index, double[] source, int sourceIndex, int length) {
+		System.arraycopy(source, sourceIndex, mValues, mOffset + index, length);
+	}
+
+	@Override
+	public double[] toArray() {
+		return Arrays.copyOfRange(mValues, mOffset, mOffset + mSize);
+	}
+
+	@Override
+	public boolean isDirect() {
+		return false;
+	}
+
+	@Override
+	double[] array() {
+		return mValues;
+	}
+
+	@Override
+	int arrayOffset() {
+		return mOffset;
+	}
+}
@@ -0,0 +1,289 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * KineticsExtractor finds the {@link ExposureKinetics} of every exposure of a run in a
+ * single read-only pass, so it can run as the last stage of the analysis without the data
+ * being read again. Each phase is only walked once, in order: the end of the phase before
+ * an exposure gives its baseline and noise, the exposure gives its response, initial slope
+ * and area, and the recovery after it gives its recovery time.
+ *
+ * The response time depends on the response, which isn't known until the end of the
+ * exposure. The change from the baseline first reaches any level when its running maximum
+ * does, so only the samples that set a new maximum (or minimum, for sensors whose
+ * resistance drops) are kept, and the 90% crossing is looked up among them afterwards.
+ */
+public class KineticsExtractor extends ProcessingStage
+{
+	/** Minutes before an exposure its baseline and noise are taken over **/
+	public static final double BASELINE_WINDOW = 5.0;
+	/** Minutes at the start of an exposure the initial slope is fitted over **/
+	public static final double INITIAL_SLOPE_WINDOW = 1.0;
+	/** Fraction of the response the response time is measured to **/
+	public static final double RESPONSE_FRACTION = 0.9;
+	/** Fraction of the response the recovery time is measured back down to **/
+	public static final double RECOVERY_FRACTION = 0.1;
+
+	private final PhaseIndex mPhaseIndex;
+	private final DoubleSeries mTime;
+	private final int mExposures;
+
+	/** Features of each exposure **/
+	private final double[] mBaselines;
+	private final double[] mBaselineNoises;
+	private final double[] mResponses;
+	private final double[] mResponseTimes;
+	private final double[] mRecoveryTimes;
+	private final double[] mInitialSlopes;
+	private final double[] mAreas;
+
+	/** The phase of the first value that hasn't been read **/
+	private int mPhase;
+
+	/** Running mean and sum of squared deviations of the baseline window **/
+	private long mBaselineCount;
+	private double mBaselineMean;
+	private double mBaselineSquares;
+
+	/** The exposure being read **/
+	private double mBaseline;
+	private double mPreviousTime;
+	private double mPreviousChange;
+	private double mArea;
+	private long mSlopeCount;
+	private double mSlopeMeanTime;
+	private double mSlopeMeanChange;
+	private double mSlopeTimeSquares;
+	private double mSlopeProducts;
+	/** The samples that set a new highest or lowest change from the baseline **/
+	private final DoubleSeries mRiseTimes = DoubleSeries.allocate();
+	private final DoubleSeries mRiseChanges = DoubleSeries.allocate();
+	private final DoubleSeries mFallTimes = DoubleSeries.allocate();
+	private final DoubleSeries mFallChanges = DoubleSeries.allocate();
+
+	/** The exposure whose recovery is being read, -1 for none **/
+	private int mRecovering;
+	private double mRecoveryLevel;
+	private double mRecoverySign;
+
+	/**
+	 * @param phaseIndex The phases of the run.
+	 * @param time The time column in minutes.
+	 */
+	public KineticsExtractor(PhaseIndex phaseIndex, DoubleSeries time) {
+		super(Kind.POINTWISE);
+		mPhaseIndex = phaseIndex;
+		mTime = time;
+		mExposures = phaseIndex.getExposureCount();
+		mBaselines = new double[mExposures];
+		mBaselineNoises = new double[mExposures];
+		mResponses = new double[mExposures];
+		mResponseTimes = new double[mExposures];
+		mRecoveryTimes = new double[mExposures];
+		mInitialSlopes = new double[mExposures];
+		mAreas = new double[mExposures];
+	}
+
+	@Override
+	public void begin(DoubleSeries values) {
+		Arrays.fill(mBaselines, Double.NaN);
+		Arrays.fill(mBaselineNoises, Double.NaN);
+		Arrays.fill(mResponses, Double.NaN);
+		Arrays.fill(mResponseTimes, Double.NaN);
+		Arrays.fill(mRecoveryTimes, Double.NaN);
+		Arrays.fill(mInitialSlopes, Double.NaN);
+		Arrays.fill(mAreas, Double.NaN);
+		mPhase = 0;
+		mBaselineCount = 0;
+		mBaselineMean = 0;
+		mBaselineSquares = 0;
+		mRecovering = -1;
+	}
+
+	@Override
+	public void process(DoubleSeries values, int from, int to) {
+		while (from < to) {
+			while (from >= mPhaseIndex.getEnd(mPhase)) {
+				mPhase++;
+			}
+			int end = mPhaseIndex.getEnd(mPhase);
+			int stop = Math.min(to, end);
+			int exposure = mPhaseIndex.getExposure(mPhase);
+			if (exposure >= 0) {
+				if (from == mPhaseIndex.getStart(mPhase)) {
+					startExposure(exposure);
+				}
+				readExposure(values, exposure, from, stop);
+				if (stop == end) {
+					finishExposure(exposure);
+				}
+			} else {
+				if (mRecovering >= 0 && mPhase == mPhaseIndex.getRecoveryPhase(mRecovering)) {
+					readRecovery(values, from, stop);
+				}
+				/** The baseline, or a recovery, comes right before the next exposure **/
+				int next = mPhase / 2;
+				if (next < mExposures) {
+					readBaseline(values, next, from, stop);
+				}
+			}
+			from = stop;
+		}
+	}
+
+	private void readBaseline(DoubleSeries values, int exposure, int from, int to) {
+		double windowStart = PhaseIndex.getExposureStartTime(exposure) - BASELINE_WINDOW;
+		DoubleSeries times = mTime;
+		long count = mBaselineCount;
+		double mean = mBaselineMean;
+		double squares = mBaselineSquares;
+		for (int i = from; i < to; ++i) {
+			if (times.get(i) >= windowStart) {
+				double value = values.get(i);
+				count++;
+				double delta = value - mean;
+				mean += delta / count;
+				squares += delta * (value - mean);
+			}
+		}
+		mBaselineCount = count;
+		mBaselineMean = mean;
+		mBaselineSquares = squares;
+	}
+
+	private void startExposure(int exposure) {
+		/** Without a baseline nothing can be measured from it, so the features stay NaN **/
+		mBaseline = mBaselineCount > 0 ? mBaselineMean : Double.NaN;
+		mBaselines[exposure] = mBaseline;
+		if (mBaselineCount > 1) {
+			mBaselineNoises[exposure] = Math.sqrt(mBaselineSquares / (mBaselineCount - 1));
+		}
+		mBaselineCount = 0;
+		mBaselineMean = 0;
+		mBaselineSquares = 0;
+
+		mRecovering = -1;
+		mPreviousTime = Double.NaN;
+		mArea = 0;
+		mSlopeCount = 0;
+		mSlopeMeanTime = 0;
+		mSlopeMeanChange = 0;
+		mSlopeTimeSquares = 0;
+		mSlopeProducts = 0;
+		mRiseTimes.clear();
+		mRiseChanges.clear();
+		mFallTimes.clear();
+		mFallChanges.clear();
+	}
+
+	private void readExposure(DoubleSeries values, int exposure, int from, int to) {
+		DoubleSeries times = mTime;
+		double baseline = mBaseline;
+		if (Double.isNaN(baseline)) {
+			return;
+		}
+		double slopeEnd = PhaseIndex.getExposureStartTime(exposure) + INITIAL_SLOPE_WINDOW;
+		double previousTime = mPreviousTime;
+		double previousChange = mPreviousChange;
+		double area = mArea;
+		int riseCount = mRiseChanges.size();
+		int fallCount = mFallChanges.size();
+		double highest = riseCount > 0 ? mRiseChanges.get(riseCount - 1) : 0;
+		double lowest = fallCount > 0 ? mFallChanges.get(fallCount - 1) : 0;
+		for (int i = from; i < to; ++i) {
+			double time = times.get(i);
+			double change = values.get(i) - baseline;
+			/** Trapezoidal rule, from the second sample of the exposure on **/
+			if (!Double.isNaN(previousTime)) {
+				area += (time - previousTime) * (change + previousChange) / 2;
+			}
+			previousTime = time;
+			previousChange = change;
+			if (time < slopeEnd) {
+				mSlopeCount++;
+				double timeDelta = time - mSlopeMeanTime;
+				mSlopeMeanTime += timeDelta / mSlopeCount;
+				mSlopeMeanChange += (change - mSlopeMeanChange) / mSlopeCount;
+				mSlopeTimeSquares += timeDelta * (time - mSlopeMeanTime);
+				mSlopeProducts += timeDelta * (change - mSlopeMeanChange);
+			}
+			if (change > highest) {
+				highest = change;
+				mRiseTimes.add(time);
+				mRiseChanges.add(change);
+			} else if (change < lowest) {
+				lowest = change;
+				mFallTimes.add(time);
+				mFallChanges.add(change);
+			}
+		}
+		mPreviousTime = previousTime;
+		mPreviousChange = previousChange;
+		mArea = area;
+	}
+
+	private void finishExposure(int exposure) {
+		if (Double.isNaN(mBaseline)) {
+			return;
+		}
+		mAreas[exposure] = mArea;
+		if (mSlopeTimeSquares > 0) {
+			mInitialSlopes[exposure] = mSlopeProducts / mSlopeTimeSquares;
+		}
+
+		int riseCount = mRiseChanges.size();
+		int fallCount = mFallChanges.size();
+		double highest = riseCount > 0 ? mRiseChanges.get(riseCount - 1) : 0;
+		double lowest = fallCount > 0 ? mFallChanges.get(fallCount - 1) : 0;
+		boolean rising = highest >= -lowest;
+		double response = rising ? highest : lowest;
+		mResponses[exposure] = response;
+		if (response == 0) {
+			return;
+		}
+		DoubleSeries times = rising ? mRiseTimes : mFallTimes;
+		DoubleSeries changes = rising ? mRiseChanges : mFallChanges;
+		double level = RESPONSE_FRACTION * Math.abs(response);
+		for (int i = 0; i < changes.size(); ++i) {
+			if (Math.abs(changes.get(i)) >= level) {
+				mResponseTimes[exposure] = times.get(i) -
+						PhaseIndex.getExposureStartTime(exposure);
+				break;
+			}
+		}
+		mRecovering = exposure;
+		mRecoveryLevel = RECOVERY_FRACTION * Math.abs(response);
+		mRecoverySign = Math.signum(response);
+	}
+
+	private void readRecovery(DoubleSeries values, int from, int to) {
+		DoubleSeries times = mTime;
+		int exposure = mRecovering;
+		double baseline = mBaselines[exposure];
+		for (int i = from; i < to; ++i) {
+			if ((values.get(i) - baseline) * mRecoverySign <= mRecoveryLevel) {
+				mRecoveryTimes[exposure] = times.get(i) -
+						PhaseIndex.getExposureStartTime(exposure) -
+						SensorDataProcessor.DURATION_EXPOSURE;
+				mRecovering = -1;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the features of each exposure, in order, once the stage has read the run.
+	 */
+	public List<ExposureKinetics> getKinetics() {
+		List<ExposureKinetics> kinetics = new ArrayList<ExposureKinetics>(mExposures);
+		for (int i = 0; i < mExposures; ++i) {
+			kinetics.add(new ExposureKinetics(mBaselines[i], mBaselineNoises[i],
+					mResponses[i], mResponseTimes[i], mRecoveryTimes[i], mInitialSlopes[i],
+					mAreas[i]));
+		}
+		return kinetics;
+	}
+}
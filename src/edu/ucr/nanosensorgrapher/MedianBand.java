@@ -0,0 +1,119 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.Arrays;
+
+/**
+ * MedianBand keeps an order statistic (usually the median) of a fixed number of values up
+ * to date as the values are replaced one at a time, without selecting it from all of
+ * them again. It holds the values nearest the statistic in sorted order and only counts
+ * the values below and above them, so a replacement costs O(band) and the statistic stays
+ * exact for as long as it doesn't move out of the band.
+ */
+class MedianBand
+{
+	private final int mHalfWidth;
+	/** The values nearest the statistic, sorted **/
+	private final double[] mBand;
+	private int mSize;
+	/** Number of values no greater than mBand[0] that aren't in the band **/
+	private int mBelow;
+	/** Number of values no less than mBand[mSize - 1] that aren't in the band **/
+	private int mAbove;
+
+	/**
+	 * @param halfWidth How many values on each side of the statistic the band is built
+	 * 			with. The band holds up to twice that as values are replaced.
+	 */
+	public MedianBand(int halfWidth) {
+		mHalfWidth = halfWidth;
+		mBand = new double[4 * halfWidth + 1];
+	}
+
+	/**
+	 * Rebuilds the band from values that were just partitioned around rank by
+	 * {@link MedianSelector#select(double[], int, int, int)}. The values are reordered.
+	 *
+	 * @param values The values, the rank-th smallest at index rank.
+	 * @param size The number of values.
+	 * @param rank The rank the values were partitioned around.
+	 */
+	public void reset(double[] values, int size, int rank) {
+		int lower = Math.min(mHalfWidth, rank);
+		int upper = Math.min(mHalfWidth, size - rank - 1);
+		/** The largest values below rank and the smallest above it, each sorted **/
+		if (lower > 0) {
+			MedianSelector.select(values, 0, rank, rank - lower);
+			Arrays.sort(values, rank - lower, rank);
+		}
+		if (upper > 0) {
+			MedianSelector.select(values, rank + 1, size, upper - 1);
+			Arrays.sort(values, rank + 1, rank + 1 + upper);
+		}
+		mSize = lower + upper + 1;
+		System.arraycopy(values, rank - lower, mBand, 0, mSize);
+		mBelow = rank - lower;
+		mAbove = size - rank - upper - 1;
+	}
+
+	/**
+	 * Returns whether the band still holds the value of the passed in rank.
+	 */
+	public boolean contains(int rank) {
+		return rank >= mBelow && rank < mBelow + mSize;
+	}
+
+	public double get(int rank) {
+		return mBand[rank - mBelow];
+	}
+
+	/**
+	 * Replaces one of the values with another.
+	 *
+	 * @return False if the band can no longer be kept up to date, in which case it has to
+	 * 			be reset before it is used again.
+	 */
+	public boolean replace(double oldValue, double newValue) {
+		if (mSize == 0) {
+			return false;
+		}
+		if (oldValue < mBand[0]) {
+			mBelow--;
+		} else if (oldValue > mBand[mSize - 1]) {
+			mAbove--;
+		} else {
+			int index = Arrays.binarySearch(mBand, 0, mSize, oldValue);
+			if (index < 0) {
+				return false;
+			}
+			System.arraycopy(mBand, index + 1, mBand, index, mSize - index - 1);
+			if (--mSize == 0) {
+				return false;
+			}
+		}
+
+		if (newValue < mBand[0]) {
+			mBelow++;
+		} else if (newValue > mBand[mSize - 1]) {
+			mAbove++;
+		} else {
+			if (mSize == mBand.length) {
+				/** Push out the end farther from the middle of the values **/
+				if (mBelow < mAbove) {
+					System.arraycopy(mBand, 1, mBand, 0, --mSize);
+					mBelow++;
+				} else {
+					mSize--;
+					mAbove++;
+				}
+			}
+			int index = Arrays.binarySearch(mBand, 0, mSize, newValue);
+			if (index < 0) {
+				index = -index - 1;
+			}
+			System.arraycopy(mBand, index, mBand, index + 1, mSize - index);
+			mBand[index] = newValue;
+			mSize++;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,92 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.Arrays;
+
+/**
+ * MedianSelector finds the k-th smallest value of a range of a double[] in place, without
+ * sorting the whole range or allocating anything. It is an introselect: a quickselect
+ * with median of three pivots that falls back to sorting the remaining range if the
+ * partitions stop shrinking, so the worst case is O(n log n) instead of O(n^2).
+ */
+public class MedianSelector
+{
+	/** Ranges this small are sorted instead of partitioned **/
+	private static final int SORT_THRESHOLD = 16;
+
+	private MedianSelector() {
+	}
+
+	/**
+	 * Returns the value that would be at index from + rank if the range were sorted. The
+	 * values of the range are reordered.
+	 *
+	 * @param values The array holding the range.
+	 * @param from The first index of the range (inclusive).
+	 * @param to The last index of the range (exclusive).
+	 * @param rank The 0 based rank of the value to find within the range.
+	 */
+	public static double select(double[] values, int from, int to, int rank) {
+		int target = from + rank;
+		int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+		int low = from;
+		int high = to - 1;
+		while (high - low >= SORT_THRESHOLD) {
+			if (depthLimit-- == 0) {
+				Arrays.sort(values, low, high + 1);
+				return values[target];
+			}
+			int pivotIndex = partition(values, low, high);
+			if (target < pivotIndex) {
+				high = pivotIndex - 1;
+			} else if (target > pivotIndex) {
+				low = pivotIndex + 1;
+			} else {
+				return values[target];
+			}
+		}
+		Arrays.sort(values, low, high + 1);
+		return values[target];
+	}
+
+	/**
+	 * Partitions the range around the median of its first, middle and last values.
+	 *
+	 * @return The index the pivot ended up at. Values before it are no greater and values
+	 * 			after it are no less.
+	 */
+	private static int partition(double[] values, int low, int high) {
+		int middle = (low + high) >>> 1;
+		if (values[middle] < values[low]) {
+			swap(values, middle, low);
+		}
+		if (values[high] < values[low]) {
+			swap(values, high, low);
+		}
+		if (values[high] < values[middle]) {
+			swap(values, high, middle);
+		}
+		/** values[low] <= pivot <= values[high], so neither scan can run off the range **/
+		double pivot = values[middle];
+		swap(values, middle, high - 1);
+		int i = low;
+		int j = high - 1;
+		while (true) {
+			while (values[++i] < pivot) {
+			}
+			while (values[--j] > pivot) {
+			}
+			if (i >= j) {
+				break;
+			}
+			swap(values, i, j);
+		}
+		swap(values, i, high - 1);
+		return i;
+	}
+
+	private static void swap(double[] values, int a, int b) {
+		double value = values[a];
+		values[a] = values[b];
+		values[b] = value;
+	}
+}
@@ -0,0 +1,115 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * MinMaxPyramid holds the smallest and largest value of every bucket of a series at each
+ * power of two bucket size, so a plot of any range of the series can be drawn from about
+ * as many buckets as it has pixel columns instead of from every sample in the range.
+ *
+ * Level 0 is the series itself. Each bucket of level k + 1 covers two buckets of level k,
+ * so bucket b of level k covers samples b * 2^k (inclusive) to (b + 1) * 2^k (exclusive),
+ * and the pyramid is built from the level below in O(n) once per file. The minimums and
+ * maximums of all the levels above 0 hold about n values each, so the pyramid uses about
+ * twice as much memory as the series. NaNs are skipped. A bucket that holds only NaNs has a
+ * minimum of positive and a maximum of negative infinity.
+ */
+public class MinMaxPyramid
+{
+	private final DoubleSeries mValues;
+	private final int mSize;
+	/** The minimums and maximums of level k + 1 **/
+	private final double[][] mMins;
+	private final double[][] mMaxs;
+
+	/**
+	 * Builds the pyramid of a series. The series isn't copied, so it has to stay unchanged
+	 * and allocated for as long as the pyramid is used.
+	 */
+	public MinMaxPyramid(DoubleSeries values) {
+		mValues = values;
+		mSize = values.size();
+		int levels = 0;
+		for (int buckets = mSize; buckets > 1; buckets = (buckets + 1) / 2) {
+			levels++;
+		}
+		mMins = new double[levels][];
+		mMaxs = new double[levels][];
+		for (int level = 0; level < levels; ++level) {
+			int lowerBuckets = getBucketCount(level);
+			int buckets = (lowerBuckets + 1) / 2;
+			double[] mins = new double[buckets];
+			double[] maxs = new double[buckets];
+			for (int i = 0; i < buckets; ++i) {
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				int end = Math.min(2 * i + 2, lowerBuckets);
+				for (int j = 2 * i; j < end; ++j) {
+					double lowerMin = getMin(level, j);
+					double lowerMax = getMax(level, j);
+					min = lowerMin < min ? lowerMin : min;
+					max = lowerMax > max ? lowerMax : max;
+				}
+				mins[i] = min;
+				maxs[i] = max;
+			}
+			mMins[level] = mins;
+			mMaxs[level] = maxs;
+		}
+	}
+
+	/**
+	 * Returns the number of levels, including level 0.
+	 */
+	public int getLevelCount() {
+		return mMins.length + 1;
+	}
+
+	/**
+	 * Returns the coarsest level whose buckets hold no more than the passed in number of
+	 * samples, which is the one to draw from when that many samples fall in each pixel
+	 * column.
+	 */
+	public int getLevel(int samplesPerBucket) {
+		int level = 0;
+		while (level + 1 < getLevelCount() && (2L << level) <= samplesPerBucket) {
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Returns the number of buckets of a level, the last of which may hold fewer samples.
+	 */
+	public int getBucketCount(int level) {
+		return level == 0 ? mSize : mMins[level - 1].length;
+	}
+
+	/**
+	 * Returns the index of the bucket of a level that holds the passed in sample.
+	 */
+	public static int getBucket(int level, int index) {
+		return index >> level;
+	}
+
+	/**
+	 * Returns the index of the first sample of a bucket of a level.
+	 */
+	public static int getBucketStart(int level, int bucket) {
+		return bucket << level;
+	}
+
+	public double getMin(int level, int bucket) {
+		if (level == 0) {
+			double value = mValues.get(bucket);
+			return Double.isNaN(value) ? Double.POSITIVE_INFINITY : value;
+		}
+		return mMins[level - 1][bucket];
+	}
+
+	public double getMax(int level, int bucket) {
+		if (level == 0) {
+			double value = mValues.get(bucket);
+			return Double.isNaN(value) ? Double.NEGATIVE_INFINITY : value;
+		}
+		return mMaxs[level - 1][bucket];
+	}
+}
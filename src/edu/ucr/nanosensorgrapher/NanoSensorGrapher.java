@@ -3,21 +3,23 @@ package edu.ucr.nanosensorgrapher;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Container;
-import java.awt.Graphics2D;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.imageio.ImageIO;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
@@ -44,10 +46,15 @@ public class NanoSensorGrapher extends WindowAdapter
 	private static final int FRAME_HEIGHT = 500;
 
 	private static final boolean DEBUG_SHOW_FRAME = false;
+	
+	/** How often a followed file is checked for new data and the graph redrawn (ms) **/
+	private static final int FOLLOW_REFRESH_INTERVAL = 1000;
 
 	private static final String ERROR_FILE_SELECTION = "Error: No file selected";
 	private static final String ERROR_INVALID_FILE = "Error: Invalid file(s): \n";
 	private static final String ERROR_FILE_READ = "Error: Error parsing data file(s): \n";
+	private static final String ERROR_CALIBRATION_WRITE = "Error: Unable to write the " +
+			"calibration table: \n";
 	private static final String ERROR_GAS_SELECTION = "Error: Unable to parse custom " +
 			"gas concentration";
 	private static final String INFO_SELECTED_FILES = "Selected File(s): \n";
@@ -59,14 +66,20 @@ public class NanoSensorGrapher extends WindowAdapter
 	
 	private static final String IMAGE_FILETYPE = "png";
 	private static final String RESPONSE_FILETYPE = "txt";
+	private static final String DRIFT_FILETYPE = "drift.txt";
+	private static final String KINETICS_FILETYPE = "kinetics.txt";
+	/** Written to the folder of the first file once every file of a run is processed **/
+	private static final String CALIBRATION_FILE_NAME = "calibration.txt";
 
-	private static JFrame mFrame = new JFrame(FRAME_TITLE);
+	/** Created in main so the batch methods can be used without a display **/
+	private static JFrame mFrame;
 	private static FileSelectionPanel mFilePanel = new FileSelectionPanel();
 	private static GasSelectionPanel mGasPanel = new GasSelectionPanel();
 	private static DataProcessingPanel mDataProcessingPanel = new DataProcessingPanel();
 	private static JButton mStartButton = new JButton(START_BUTTON_LABEL);
 	
-	private static int mThreads;
+	/** Number of files of the current run that are still being processed **/
+	private static final AtomicInteger mThreads = new AtomicInteger();
 	
 	private static String mInvalidFiles;
 	
@@ -96,10 +109,21 @@ public class NanoSensorGrapher extends WindowAdapter
 			return;
 		}
 		
-		int outlierRemoval = mDataProcessingPanel.getOutlierRemoval();
-		double outlierStdThreshold = mDataProcessingPanel.getOutlierStdThreshold();
-		int smoothDataPeriod = mDataProcessingPanel.getSmoothDataPeriod();
-		boolean baselineDrift = mDataProcessingPanel.getBaselineDrift();
+		ProcessingOptions options = mDataProcessingPanel.getProcessingOptions();
+		boolean useCache = mFilePanel.isCacheEnabled();
+		boolean offHeap = mFilePanel.isOffHeapEnabled();
+		
+		if (mFilePanel.isFollowSelected()) {
+			followFile(selectedFiles.get(0), gasConcentrations);
+			mStartButton.setText(START_BUTTON_LABEL);
+			mStartButton.setEnabled(true);
+			return;
+		}
+		
+		if (mFilePanel.isExploreSelected()) {
+			exploreFile(selectedFiles.get(0), gasConcentrations, options, useCache, offHeap);
+			return;
+		}
 		
 		String fileList = "";
 		for (int i = 0; i < selectedFiles.size(); ++i) {
@@ -108,14 +132,22 @@ public class NanoSensorGrapher extends WindowAdapter
 		String selectedFileList = INFO_SELECTED_FILES + fileList;
 		JOptionPane.showMessageDialog(mFrame, selectedFileList);
 		
+		/**
+		 * The calibration curve of each file that was processed, fitted by the thread of
+		 * the file as soon as it is analyzed so only the curve has to be kept
+		 */
+		final Map<File, CalibrationCurve> curves =
+				Collections.synchronizedMap(new HashMap<File, CalibrationCurve>());
+		final List<File> finalSelectedFiles = selectedFiles;
+		/** Counted up front so a file that finishes early can't look like the last one **/
+		mThreads.set(selectedFiles.size());
 		for (int i = 0; i < selectedFiles.size(); ++i) {
 			final File file = selectedFiles.get(i);
 			final String finalGasConcentration = gasConcentrations;
 			final String finalFileList = fileList;
-			final int finalOutlierRemoval = outlierRemoval;
-			final double finalOutlierStdThreshold = outlierStdThreshold;
-			final int finalSmoothDataPeriod = smoothDataPeriod;
-			final boolean finalBaselineDrift = baselineDrift;
+			final ProcessingOptions finalOptions = options;
+			final boolean finalUseCache = useCache;
+			final boolean finalOffHeap = offHeap;
 			/**
 			 * Generate a new thread for each file since majority of time will be blocked
 			 * based on disk I/O.
@@ -125,15 +157,17 @@ public class NanoSensorGrapher extends WindowAdapter
 				@Override
 				public void run() {
 					try {
-						generateGraph(file, finalGasConcentration, finalOutlierRemoval, finalOutlierStdThreshold, finalSmoothDataPeriod, finalBaselineDrift);
+						ProcessingResult result = generateGraph(file, finalGasConcentration,
+								finalOptions, finalUseCache, finalOffHeap);
+						curves.put(file, CalibrationCurve.fit(result));
 					} catch (IOException e) {
 						JOptionPane.showMessageDialog(mFrame, ERROR_FILE_READ);
 						e.printStackTrace();
 					} catch (FileException e) {
 						mInvalidFiles += file.getAbsolutePath() + "\n";
 					} finally {
-						mThreads--;
-						if (mThreads == 0) {
+						if (mThreads.decrementAndGet() == 0) {
+							writeCalibration(finalSelectedFiles, curves);
 							String processedFiles = INFO_PROCESSED_FILES + finalFileList;
 							JOptionPane.showMessageDialog(mFrame, processedFiles);
 							if (mInvalidFiles != null && !mInvalidFiles.isEmpty()) {
@@ -148,65 +182,230 @@ public class NanoSensorGrapher extends WindowAdapter
 				}
 			});
 			processingThread.start();
-			mThreads++;
 		}
 	}
 	
-	public static void generateGraph(File file, String concentration, int outlierRemoval, double outlierStdThreshold,
-			int smoothDataPeriod, boolean baselineDrift) throws IOException, FileException {
-		/** Read data from files and store into ArrayLists **/
-		BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
-		ArrayList<Double> timeData = new ArrayList<Double>();
-		ArrayList<Double> resistanceData = new ArrayList<Double>();
-		String line;
-		while((line = bufferedReader.readLine()) != null) {
-			if (line != null) {
-				line = line.trim();
-				String[] values = line.split("\t");
-				if (values.length != 2) {
-					throw (new FileException());
+	/**
+	 * Writes the calibration curves of every processed file as one tab separated table next
+	 * to the first file, in the order the files were selected.
+	 */
+	private static void writeCalibration(List<File> files, Map<File, CalibrationCurve> curves) {
+		List<File> processedFiles = new ArrayList<File>();
+		for (int i = 0; i < files.size(); ++i) {
+			if (curves.containsKey(files.get(i))) {
+				processedFiles.add(files.get(i));
+			}
+		}
+		if (processedFiles.isEmpty()) {
+			return;
+		}
+		File calibrationFile = new File(processedFiles.get(0).getAbsoluteFile().getParentFile(),
+				CALIBRATION_FILE_NAME);
+		try {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(calibrationFile));
+			try {
+				writer.write("File\tGas\tPower Coefficient\tPower Exponent\tPower R^2\t" +
+						"Log Slope\tLog Intercept\tLog R^2\tSensitivity\tBaseline Noise\tLOD");
+				for (int i = 0; i < processedFiles.size(); ++i) {
+					CalibrationCurve curve = curves.get(processedFiles.get(i));
+					writer.newLine();
+					writer.write(processedFiles.get(i).getName() + "\t" + curve.getGasName() +
+							"\t" + curve.getPowerCoefficient() + "\t" + curve.getPowerExponent() +
+							"\t" + curve.getPowerRSquared() + "\t" + curve.getLogSlope() + "\t" +
+							curve.getLogIntercept() + "\t" + curve.getLogRSquared() + "\t" +
+							curve.getSensitivity() + "\t" + curve.getBaselineNoise() + "\t" +
+							curve.getDetectionLimit());
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(mFrame, ERROR_CALIBRATION_WRITE +
+					calibrationFile.getAbsolutePath());
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Opens a live graph of a file that is still being written. A background thread
+	 * parses the newly appended lines and redraws the graph at most once every
+	 * {@link #FOLLOW_REFRESH_INTERVAL} ms until the graph window is closed.
+	 * 
+	 * @param file The file to follow.
+	 * @param concentration The gas name followed by the exposure concentrations.
+	 */
+	private static void followFile(final File file, String concentration) {
+		final GraphPanel graphPanel = new GraphPanel(concentration, file.getName());
+		final SensorDataFollower follower = new SensorDataFollower(file);
+		final JFrame graphFrame = new JFrame(file.getName());
+		graphFrame.setBackground(Color.WHITE);
+		graphFrame.getContentPane().add(graphPanel);
+		graphFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		graphFrame.pack();
+		
+		final Thread followThread = new Thread(new Runnable()
+		{
+			@Override
+			public void run() {
+				try {
+					while (!Thread.currentThread().isInterrupted()) {
+						if (follower.poll() > 0) {
+							graphPanel.appendData(follower.getData());
+							graphPanel.repaint();
+						}
+						Thread.sleep(FOLLOW_REFRESH_INTERVAL);
+					}
+				} catch (InterruptedException e) {
+					/** The graph window was closed **/
+				} catch (IOException e) {
+					JOptionPane.showMessageDialog(mFrame, ERROR_FILE_READ + file.getAbsolutePath());
+					e.printStackTrace();
+				} catch (FileException e) {
+					String error = e.getMessage() != null ? e.getMessage() : ERROR_INVALID_FILE;
+					JOptionPane.showMessageDialog(mFrame, error + file.getAbsolutePath());
+				} finally {
+					follower.close();
+				}
+			}
+		});
+		graphFrame.addWindowListener(new WindowAdapter()
+		{
+			@Override
+			public void windowClosed(WindowEvent event) {
+				followThread.interrupt();
+			}
+		});
+		graphFrame.setVisible(true);
+		followThread.start();
+	}
+	
+	/**
+	 * Analyzes a file on a background thread and opens it in a {@link GraphViewer}. The
+	 * analysis is kept until the viewer window is closed.
+	 */
+	private static void exploreFile(final File file, final String concentration,
+			final ProcessingOptions options, final boolean useCache, final boolean offHeap) {
+		Thread exploreThread = new Thread(new Runnable()
+		{
+			@Override
+			public void run() {
+				try {
+					SensorData sensorData = loadSensorData(file, useCache, offHeap);
+					final ProcessingResult result;
+					try {
+						result = SensorDataProcessor.process(sensorData, concentration, options);
+					} finally {
+						sensorData.free();
+					}
+					JFrame viewerFrame = new JFrame(file.getName());
+					viewerFrame.setBackground(Color.WHITE);
+					viewerFrame.getContentPane().add(new GraphViewer(result, file.getName()));
+					viewerFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+					viewerFrame.addWindowListener(new WindowAdapter()
+					{
+						@Override
+						public void windowClosed(WindowEvent event) {
+							result.free();
+						}
+					});
+					viewerFrame.pack();
+					viewerFrame.setVisible(true);
+				} catch (IOException e) {
+					JOptionPane.showMessageDialog(mFrame, ERROR_FILE_READ + file.getAbsolutePath());
+					e.printStackTrace();
+				} catch (FileException e) {
+					JOptionPane.showMessageDialog(mFrame, ERROR_INVALID_FILE + file.getAbsolutePath());
+				} finally {
+					mStartButton.setText(START_BUTTON_LABEL);
+					mStartButton.setEnabled(true);
+				}
+			}
+		});
+		exploreThread.start();
+	}
+	
+	/**
+	 * Reads a data file from its cache, or parses it and caches it when useCache is set.
+	 */
+	private static SensorData loadSensorData(File file, boolean useCache, boolean offHeap)
+			throws IOException, FileException {
+		SensorData sensorData = null;
+		if (useCache) {
+			sensorData = SensorDataCache.load(file, offHeap);
+		}
+		if (sensorData == null) {
+			/** Read before parsing so a file changed during the parse isn't cached as current **/
+			long fileSize = file.length();
+			long lastModified = file.lastModified();
+			sensorData = SensorDataParser.parse(file, offHeap);
+			if (useCache) {
+				try {
+					SensorDataCache.store(file, fileSize, lastModified, sensorData);
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
-				timeData.add(Double.parseDouble(values[0]));
-				resistanceData.add(Double.parseDouble(values[1]));
 			}
 		}
-		bufferedReader.close();
+		return sensorData;
+	}
+	
+	/**
+	 * Graphs a single data file and writes the image and max response files next to it.
+	 * When offHeap is set the parsed and normalized data is stored outside of the heap and
+	 * released as soon as this file is done, so a large batch doesn't fill the heap.
+	 *
+	 * @return The analysis of the file. Its time and normalized resistance series have
+	 * 			already been freed, but the concentrations, max responses, kinetics and
+	 * 			baseline drift can still be used.
+	 */
+	public static ProcessingResult generateGraph(File file, String concentration, ProcessingOptions options,
+			boolean useCache, boolean offHeap) throws IOException, FileException {
+		/** Read data from the cache or from the file into primitive columns **/
+		SensorData sensorData = loadSensorData(file, useCache, offHeap);
 		
 		/** Generate output file names **/
 		String absolutePath = file.getAbsolutePath();
 		String folderPath = absolutePath.substring(0, absolutePath.lastIndexOf("\\") + 1);
 		String dataFileName = file.getName();
-		String fileName = dataFileName.substring(0, dataFileName.lastIndexOf('.') + 1);
+		String uncompressedFileName = SensorDataParser.stripCompressedExtension(dataFileName);
+		String fileName = uncompressedFileName.substring(0, uncompressedFileName.lastIndexOf('.') + 1);
 		String imageFileName = fileName + IMAGE_FILETYPE;
 		String responseFileName = fileName + RESPONSE_FILETYPE;
 		String responseFilePath = folderPath + responseFileName;
+		String driftFilePath = folderPath + fileName + DRIFT_FILETYPE;
+		String kineticsFilePath = folderPath + fileName + KINETICS_FILETYPE;
 		String imageFilePath = folderPath + imageFileName;
 
-		/** Create graph **/
-		JFrame graphFrame = new JFrame(dataFileName);
-		GraphPanel graphPanel = new GraphPanel(timeData, resistanceData, concentration, dataFileName, outlierRemoval,
-						outlierStdThreshold, smoothDataPeriod, baselineDrift);
-		graphFrame.setBackground(Color.WHITE);
-		graphFrame.getContentPane().add(graphPanel);
-		if (DEBUG_SHOW_FRAME) {
-			graphFrame.setVisible(true);
+		/** Analyze the data **/
+		ProcessingResult result;
+		try {
+			result = SensorDataProcessor.process(sensorData, concentration, options);
+		} finally {
+			/** The result keeps its own normalized copy of the data **/
+			sensorData.free();
 		}
-		graphFrame.pack();
-
-		/** Output graph as image file **/
-		BufferedImage image = (BufferedImage)
-				graphPanel.createImage(graphPanel.getWidth(), graphPanel.getHeight());
-		Graphics2D g2d = image.createGraphics();
-		graphPanel.paintComponent(g2d);
 		try {
-			ImageIO.write(image, IMAGE_FILETYPE, new File(imageFilePath));
-		} catch (IOException e) {
-			e.printStackTrace();
+			writeGraph(result, dataFileName, imageFilePath, options.getImageCompressionLevel());
+			writeResponses(result, responseFilePath);
+			writeKinetics(result, kineticsFilePath);
+			if (result.getBaselineDrift() != null) {
+				writeDrift(result.getBaselineDrift(), driftFilePath);
+			}
+		} finally {
+			if (!DEBUG_SHOW_FRAME) {
+				result.free();
+			}
 		}
-		
-		/** Get max response data and output as txt file **/
-		ArrayList<Double> concentrations = graphPanel.getConcentrations();
-		ArrayList<Double> responses = graphPanel.getMaxResponses();
+		return result;
+	}
+	
+	/**
+	 * Writes the max response of each exposure as a txt file.
+	 */
+	private static void writeResponses(ProcessingResult result, String responseFilePath)
+			throws IOException {
+		DoubleSeries concentrations = result.getConcentrations();
+		DoubleSeries responses = result.getMaxResponses();
 		File responseFile = new File(responseFilePath);
 		BufferedWriter writer = new BufferedWriter(new FileWriter(responseFile));
 		for (int i = 0; i < concentrations.size(); ++i) {
@@ -217,7 +416,67 @@ public class NanoSensorGrapher extends WindowAdapter
 		writer.close();
 	}
 	
+	/**
+	 * Writes the kinetics of each exposure as a tab separated txt file with a header row.
+	 */
+	private static void writeKinetics(ProcessingResult result, String kineticsFilePath)
+			throws IOException {
+		DoubleSeries concentrations = result.getConcentrations();
+		List<ExposureKinetics> kinetics = result.getKinetics();
+		BufferedWriter writer = new BufferedWriter(new FileWriter(new File(kineticsFilePath)));
+		writer.write("Concentration\tResponse\tT90 Response\tT90 Recovery\tInitial Slope\t" +
+				"Area\tBaseline\tBaseline Noise");
+		for (int i = 0; i < kinetics.size(); ++i) {
+			ExposureKinetics exposure = kinetics.get(i);
+			writer.newLine();
+			writer.write(concentrations.get(i) + "\t" + exposure.getResponse() + "\t" +
+					exposure.getResponseTime() + "\t" + exposure.getRecoveryTime() + "\t" +
+					exposure.getInitialSlope() + "\t" + exposure.getArea() + "\t" +
+					exposure.getBaseline() + "\t" + exposure.getBaselineNoise());
+		}
+		writer.close();
+	}
+	
+	/**
+	 * Writes the baseline drift fit of a run as a txt file.
+	 */
+	private static void writeDrift(BaselineDrift drift, String driftFilePath)
+			throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(new File(driftFilePath)));
+		writer.write("Model\t" + drift.getModel());
+		writer.newLine();
+		writer.write("Slope\t" + drift.getSlope());
+		writer.newLine();
+		writer.write("Intercept\t" + drift.getIntercept());
+		writer.newLine();
+		writer.write("R^2\t" + drift.getRSquared());
+		writer.newLine();
+		writer.close();
+	}
+	
+	/**
+	 * Draws the graph of an analyzed file and writes it as an image file. The graph is drawn
+	 * straight into an image, so this works without a display.
+	 */
+	private static void writeGraph(ProcessingResult result, String dataFileName,
+			String imageFilePath, int compressionLevel) {
+		BufferedImage image = new GraphRenderer(result, dataFileName).render();
+		try {
+			PngWriter.write(image, new File(imageFilePath), compressionLevel);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (DEBUG_SHOW_FRAME) {
+			JFrame graphFrame = new JFrame(dataFileName);
+			graphFrame.setBackground(Color.WHITE);
+			graphFrame.getContentPane().add(new GraphPanel(result, dataFileName));
+			graphFrame.pack();
+			graphFrame.setVisible(true);
+		}
+	}
+	
 	public static void main(String[] args) {
+		mFrame = new JFrame(FRAME_TITLE);
 		mFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		mFrame.setLayout(new GridLayout(4, 1));
 		
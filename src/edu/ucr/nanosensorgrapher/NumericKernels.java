@@ -0,0 +1,253 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * NumericKernels holds the data parallel loops of the analysis written so the JIT compiler
+ * turns them into SIMD code: plain counted loops over a double[] with no calls or branches
+ * in them, which HotSpot vectorizes, and reductions split over four independent
+ * accumulators, which it doesn't vectorize on its own but which then run four to a cycle
+ * instead of one per add latency.
+ *
+ * Which loop runs is chosen for each call from how the series is stored. A heap series is
+ * worked on in its own array. A direct series is read through its buffer, which HotSpot
+ * doesn't vectorize, so a kernel that does enough arithmetic per value copies it into a
+ * scratch array a block at a time and back instead, and the rest fall back to a plain
+ * loop. Every kernel has the same result as the plain loop it replaces, apart from the
+ * rounding of sums that are added up in a different order.
+ */
+public class NumericKernels
+{
+	/** Values a direct series is copied into the scratch array in at a time **/
+	private static final int STAGING_SIZE = ProcessingPipeline.BLOCK_SIZE;
+	/** Shortest run of values the running sums are split into four chains for **/
+	private static final int MIN_SPLIT_LENGTH = 64;
+
+	private static final ThreadLocal<double[]> SCRATCH = new ThreadLocal<double[]>() {
+		@Override
+		protected double[] initialValue() {
+			return new double[STAGING_SIZE];
+		}
+	};
+
+	private NumericKernels() {
+	}
+
+	/**
+	 * Normalizes the resistances from index from (inclusive) to index to (exclusive) in
+	 * place to dR/R0 in percent.
+	 */
+	public static void normalize(DoubleSeries values, int from, int to,
+			double initialResistance) {
+		double[] array = values.array();
+		if (array != null) {
+			int offset = values.arrayOffset();
+			normalize(array, offset + from, offset + to, initialResistance);
+			return;
+		}
+		/** The division is worth the copy **/
+		double[] scratch = SCRATCH.get();
+		for (int start = from; start < to; start += STAGING_SIZE) {
+			int length = Math.min(STAGING_SIZE, to - start);
+			values.get(start, scratch, 0, length);
+			normalize(scratch, 0, length, initialResistance);
+			values.set(start, scratch, 0, length);
+		}
+	}
+
+	private static void normalize(double[] values, int from, int to,
+			double initialResistance) {
+		for (int i = from; i < to; ++i) {
+			values[i] = (values[i] - initialResistance) / initialResistance * 100;
+		}
+	}
+
+	/**
+	 * Subtracts the line time * slope + intercept from the values from index from
+	 * (inclusive) to index to (exclusive) in place.
+	 *
+	 * @return The sum of the squares of what is left of the values.
+	 */
+	public static double subtractLine(DoubleSeries times, DoubleSeries values, int from,
+			int to, double slope, double intercept) {
+		double[] timeArray = times.array();
+		double[] array = values.array();
+		if (timeArray != null && array != null) {
+			int timeOffset = times.arrayOffset() - values.arrayOffset();
+			int offset = values.arrayOffset();
+			return subtractLine(timeArray, timeOffset, array, offset + from, offset + to,
+					slope, intercept);
+		}
+		/** Copying both columns out of their buffers and back costs more than it saves **/
+		double residualSquares = 0;
+		for (int i = from; i < to; ++i) {
+			double residual = values.get(i) - (times.get(i) * slope + intercept);
+			values.set(i, residual);
+			residualSquares += residual * residual;
+		}
+		return residualSquares;
+	}
+
+	/**
+	 * @param timeOffset The index in times of the time of values[0].
+	 */
+	private static double subtractLine(double[] times, int timeOffset, double[] values,
+			int from, int to, double slope, double intercept) {
+		double sum0 = 0;
+		double sum1 = 0;
+		double sum2 = 0;
+		double sum3 = 0;
+		int i = from;
+		for (; i + 3 < to; i += 4) {
+			double residual0 = values[i] - (times[timeOffset + i] * slope + intercept);
+			double residual1 = values[i + 1] - (times[timeOffset + i + 1] * slope + intercept);
+			double residual2 = values[i + 2] - (times[timeOffset + i + 2] * slope + intercept);
+			double residual3 = values[i + 3] - (times[timeOffset + i + 3] * slope + intercept);
+			values[i] = residual0;
+			values[i + 1] = residual1;
+			values[i + 2] = residual2;
+			values[i + 3] = residual3;
+			sum0 += residual0 * residual0;
+			sum1 += residual1 * residual1;
+			sum2 += residual2 * residual2;
+			sum3 += residual3 * residual3;
+		}
+		for (; i < to; ++i) {
+			double residual = values[i] - (times[timeOffset + i] * slope + intercept);
+			values[i] = residual;
+			sum0 += residual * residual;
+		}
+		return (sum0 + sum1) + (sum2 + sum3);
+	}
+
+	/**
+	 * Finds the smallest and largest of the values from index from (inclusive) to index to
+	 * (exclusive). NaNs are skipped.
+	 *
+	 * @param range The smallest and largest values so far, updated in place.
+	 */
+	public static void findRange(DoubleSeries values, int from, int to, double[] range) {
+		double[] array = values.array();
+		if (array != null) {
+			int offset = values.arrayOffset();
+			findRange(array, offset + from, offset + to, range);
+			return;
+		}
+		/** Reads through the buffer are the bottleneck, so there is nothing to gain here **/
+		double min = range[0];
+		double max = range[1];
+		for (int i = from; i < to; ++i) {
+			double value = values.get(i);
+			min = value < min ? value : min;
+			max = value > max ? value : max;
+		}
+		range[0] = min;
+		range[1] = max;
+	}
+
+	private static void findRange(double[] values, int from, int to, double[] range) {
+		double min0 = range[0];
+		double min1 = min0;
+		double min2 = min0;
+		double min3 = min0;
+		double max0 = range[1];
+		double max1 = max0;
+		double max2 = max0;
+		double max3 = max0;
+		int i = from;
+		for (; i + 3 < to; i += 4) {
+			double value0 = values[i];
+			double value1 = values[i + 1];
+			double value2 = values[i + 2];
+			double value3 = values[i + 3];
+			min0 = value0 < min0 ? value0 : min0;
+			min1 = value1 < min1 ? value1 : min1;
+			min2 = value2 < min2 ? value2 : min2;
+			min3 = value3 < min3 ? value3 : min3;
+			max0 = value0 > max0 ? value0 : max0;
+			max1 = value1 > max1 ? value1 : max1;
+			max2 = value2 > max2 ? value2 : max2;
+			max3 = value3 > max3 ? value3 : max3;
+		}
+		for (; i < to; ++i) {
+			double value = values[i];
+			min0 = value < min0 ? value : min0;
+			max0 = value > max0 ? value : max0;
+		}
+		min0 = min1 < min0 ? min1 : min0;
+		min2 = min3 < min2 ? min3 : min2;
+		range[0] = min2 < min0 ? min2 : min0;
+		max0 = max1 > max0 ? max1 : max0;
+		max2 = max3 > max2 ? max3 : max2;
+		range[1] = max2 > max0 ? max2 : max0;
+	}
+
+	/**
+	 * Returns the first of the values from index from (inclusive) to index to (exclusive)
+	 * whose magnitude is the passed in one, or NaN if there is none. Used with
+	 * {@link #findRange(DoubleSeries, int, int, double[])} to find which value is furthest
+	 * from 0 only for the rare blocks that hold a new furthest one.
+	 */
+	public static double findFirstWithMagnitude(DoubleSeries values, int from, int to,
+			double magnitude) {
+		for (int i = from; i < to; ++i) {
+			double value = values.get(i);
+			if (Math.abs(value) == magnitude) {
+				return value;
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Replaces the values from index from (inclusive) to index to (exclusive) of an array
+	 * with their running sums, starting from start. The run is split into four chains that
+	 * are summed side by side and then shifted by the totals of the chains before them.
+	 *
+	 * @return The last running sum.
+	 */
+	public static double runningSums(double[] values, int from, int to, double start) {
+		int length = to - from;
+		if (length < MIN_SPLIT_LENGTH) {
+			double sum = start;
+			for (int i = from; i < to; ++i) {
+				sum += values[i];
+				values[i] = sum;
+			}
+			return sum;
+		}
+		int quarter = length / 4;
+		int chain1 = from + quarter;
+		int chain2 = chain1 + quarter;
+		int chain3 = chain2 + quarter;
+		double sum0 = start;
+		double sum1 = 0;
+		double sum2 = 0;
+		double sum3 = 0;
+		for (int j = 0; j < quarter; ++j) {
+			sum0 += values[from + j];
+			values[from + j] = sum0;
+			sum1 += values[chain1 + j];
+			values[chain1 + j] = sum1;
+			sum2 += values[chain2 + j];
+			values[chain2 + j] = sum2;
+			sum3 += values[chain3 + j];
+			values[chain3 + j] = sum3;
+		}
+		for (int i = chain3 + quarter; i < to; ++i) {
+			sum3 += values[i];
+			values[i] = sum3;
+		}
+		double base1 = sum0;
+		double base2 = base1 + sum1;
+		double base3 = base2 + sum2;
+		add(values, chain1, chain2, base1);
+		add(values, chain2, chain3, base2);
+		add(values, chain3, to, base3);
+		return base3 + sum3;
+	}
+
+	private static void add(double[] values, int from, int to, double addend) {
+		for (int i = from; i < to; ++i) {
+			values[i] += addend;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * How {@link SensorDataProcessor} decides a value is an outlier, either within a phase of
+ * a run or within a window around it.
+ */
+public enum OutlierMode
+{
+	/** Distance from the median in standard deviations about the median **/
+	STANDARD_DEVIATION("Standard Deviation"),
+	/**
+	 * Distance from the median in median absolute deviations, scaled to match a standard
+	 * deviation for normally distributed data. Spikes barely move the MAD, so it doesn't
+	 * hide the outliers it should find.
+	 */
+	MEDIAN_ABSOLUTE_DEVIATION("Median Absolute Deviation"),
+	/**
+	 * Distance from the median of a window centered on the value in scaled median absolute
+	 * deviations of that window, which follows drift within a phase. See
+	 * {@link HampelFilter}.
+	 */
+	HAMPEL("Rolling Hampel");
+
+	private final String mLabel;
+
+	private OutlierMode(String label) {
+		mLabel = label;
+	}
+
+	@Override
+	public String toString() {
+		return mLabel;
+	}
+}
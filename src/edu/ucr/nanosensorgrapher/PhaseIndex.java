@@ -0,0 +1,120 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * PhaseIndex holds the sample offsets of every phase of a run: the baseline, then an
+ * exposure and a recovery for each concentration, then the tail after the last recovery.
+ * It is built once per file from the time column, after which the range of any phase is
+ * looked up in O(1) instead of being searched for again by each stage of the analysis.
+ *
+ * The phases are numbered in the order they happen and cover every sample without gaps.
+ * Phase p runs from {@link #getStart(int)} (inclusive) to {@link #getEnd(int)}
+ * (exclusive). A sample taken exactly at the end of an exposure belongs to the exposure,
+ * and one taken exactly at the start of an exposure belongs to the exposure too. Phases
+ * the run never reached are empty.
+ */
+public class PhaseIndex
+{
+	/** Offset of the first sample of each phase, followed by the number of samples **/
+	private final int[] mBoundaries;
+	private final int mExposures;
+
+	/**
+	 * Indexes the phases of a run.
+	 *
+	 * @param time The time column in minutes, in increasing order.
+	 * @param exposures The number of exposures in the run.
+	 */
+	public PhaseIndex(DoubleSeries time, int exposures) {
+		mExposures = exposures;
+		mBoundaries = new int[2 * exposures + 3];
+		int size = time.size();
+		int index = findFirst(time, 0, SensorDataProcessor.DURATION_BASELINE, false);
+		mBoundaries[1] = index;
+		for (int i = 0; i < exposures; ++i) {
+			double exposureStart = getExposureStartTime(i);
+			index = findFirst(time, index,
+					exposureStart + SensorDataProcessor.DURATION_EXPOSURE, true);
+			mBoundaries[2 * i + 2] = index;
+			index = findFirst(time, index, getExposureStartTime(i + 1), false);
+			mBoundaries[2 * i + 3] = index;
+		}
+		mBoundaries[2 * exposures + 2] = size;
+	}
+
+	/**
+	 * Returns the time in minutes the passed in exposure starts at.
+	 */
+	public static double getExposureStartTime(int exposure) {
+		return SensorDataProcessor.DURATION_BASELINE + exposure *
+				(SensorDataProcessor.DURATION_EXPOSURE + SensorDataProcessor.DURATION_RECOVERY);
+	}
+
+	/**
+	 * Returns the index of the first sample at or after from whose time is at least time,
+	 * or greater than time if after is set. The binary search starts from from since each
+	 * boundary comes after the one before it.
+	 */
+	private static int findFirst(DoubleSeries time, int from, double boundary, boolean after) {
+		int low = from;
+		int high = time.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			double value = time.get(middle);
+			if (value < boundary || after && value == boundary) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the number of phases, two for each exposure plus the baseline and the tail.
+	 */
+	public int getPhaseCount() {
+		return mBoundaries.length - 1;
+	}
+
+	public int getExposureCount() {
+		return mExposures;
+	}
+
+	public int getStart(int phase) {
+		return mBoundaries[phase];
+	}
+
+	public int getEnd(int phase) {
+		return mBoundaries[phase + 1];
+	}
+
+	/**
+	 * Returns the exposure the passed in phase is, or -1 if it isn't an exposure.
+	 */
+	public int getExposure(int phase) {
+		if (phase % 2 == 1 && phase < getPhaseCount() - 1) {
+			return phase / 2;
+		}
+		return -1;
+	}
+
+	public boolean isExposure(int phase) {
+		return getExposure(phase) >= 0;
+	}
+
+	public int getBaselinePhase() {
+		return 0;
+	}
+
+	public int getExposurePhase(int exposure) {
+		return 2 * exposure + 1;
+	}
+
+	public int getRecoveryPhase(int exposure) {
+		return 2 * exposure + 2;
+	}
+
+	public int getTailPhase() {
+		return getPhaseCount() - 1;
+	}
+}
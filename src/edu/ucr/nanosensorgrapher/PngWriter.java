@@ -0,0 +1,65 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.awt.image.RenderedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * PngWriter writes images as PNG files with a chosen deflate compression level. The file
+ * is written through a buffer in memory instead of ImageIO's temporary cache file.
+ *
+ * The compression level is passed to the writer as a compression quality, which is only
+ * supported from Java 9 on; older writers use their default level.
+ */
+public class PngWriter
+{
+	/** The level the PNG writer uses by default **/
+	public static final int DEFAULT_COMPRESSION_LEVEL = 4;
+	public static final int MAX_COMPRESSION_LEVEL = 9;
+
+	private static final String FORMAT_NAME = "png";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private PngWriter() {
+	}
+
+	/**
+	 * Writes an image as a PNG file, replacing the file if it exists.
+	 *
+	 * @param compressionLevel The deflate level from 0 (none, fastest) to
+	 * 			{@link #MAX_COMPRESSION_LEVEL} (smallest, slowest).
+	 */
+	public static void write(RenderedImage image, File file, int compressionLevel)
+			throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName(FORMAT_NAME).next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		if (param.canWriteCompressed()) {
+			int level = Math.max(0, Math.min(MAX_COMPRESSION_LEVEL, compressionLevel));
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(1.0f - (float) level / MAX_COMPRESSION_LEVEL);
+		}
+		OutputStream output = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+		try {
+			ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output);
+			try {
+				writer.setOutput(imageOutput);
+				writer.write(null, new IIOImage(image, null, null), param);
+			} finally {
+				writer.dispose();
+				imageOutput.close();
+			}
+		} finally {
+			output.close();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * ProcessingOptions holds the settings {@link SensorDataProcessor} uses to clean up the
+ * normalized data of a run. The defaults leave the data untouched.
+ */
+public class ProcessingOptions
+{
+	/** Default window of the rolling Hampel filter in samples **/
+	public static final int DEFAULT_HAMPEL_WINDOW = 101;
+	/** Default degree of a polynomial baseline drift **/
+	public static final int DEFAULT_DRIFT_DEGREE = 2;
+
+	private int mOutlierRemoval;
+	private double mOutlierStdThreshold;
+	private OutlierMode mOutlierMode = OutlierMode.STANDARD_DEVIATION;
+	private int mHampelWindow = DEFAULT_HAMPEL_WINDOW;
+	private int mSmoothDataPeriod;
+	private SmoothingFilter mSmoothingFilter = SmoothingFilter.SIMPLE_MOVING_AVERAGE;
+	private boolean mBaselineDrift;
+	private DriftModel mDriftModel = DriftModel.LINEAR;
+	private int mDriftDegree = DEFAULT_DRIFT_DEGREE;
+	private boolean mVectorizedKernels = true;
+	private boolean mFusedPipeline = true;
+	private boolean mIncrementalOutliers = true;
+	private int mImageCompressionLevel = PngWriter.DEFAULT_COMPRESSION_LEVEL;
+
+	/**
+	 * @return The number of outlier removal passes, 0 for no outlier removal.
+	 */
+	public int getOutlierRemoval() {
+		return mOutlierRemoval;
+	}
+
+	public void setOutlierRemoval(int outlierRemoval) {
+		mOutlierRemoval = outlierRemoval;
+	}
+
+	/**
+	 * @return The number of standard deviations from the median before a value is
+	 * 			considered an outlier.
+	 */
+	public double getOutlierStdThreshold() {
+		return mOutlierStdThreshold;
+	}
+
+	public void setOutlierStdThreshold(double outlierStdThreshold) {
+		mOutlierStdThreshold = outlierStdThreshold;
+	}
+
+	/**
+	 * @return How the distance of a value from the median of its phase is measured.
+	 */
+	public OutlierMode getOutlierMode() {
+		return mOutlierMode;
+	}
+
+	public void setOutlierMode(OutlierMode outlierMode) {
+		mOutlierMode = outlierMode;
+	}
+
+	/**
+	 * @return The number of samples in the window of the {@link OutlierMode#HAMPEL} mode.
+	 */
+	public int getHampelWindow() {
+		return mHampelWindow;
+	}
+
+	public void setHampelWindow(int hampelWindow) {
+		mHampelWindow = hampelWindow;
+	}
+
+	/**
+	 * @return The window of the smoothing filter in samples, 0 for no smoothing.
+	 */
+	public int getSmoothDataPeriod() {
+		return mSmoothDataPeriod;
+	}
+
+	public void setSmoothDataPeriod(int smoothDataPeriod) {
+		mSmoothDataPeriod = smoothDataPeriod;
+	}
+
+	public SmoothingFilter getSmoothingFilter() {
+		return mSmoothingFilter;
+	}
+
+	public void setSmoothingFilter(SmoothingFilter smoothingFilter) {
+		mSmoothingFilter = smoothingFilter;
+	}
+
+	/**
+	 * @return Whether the baseline drift is removed.
+	 */
+	public boolean getBaselineDrift() {
+		return mBaselineDrift;
+	}
+
+	public void setBaselineDrift(boolean baselineDrift) {
+		mBaselineDrift = baselineDrift;
+	}
+
+	/**
+	 * @return The shape of the baseline drift that is removed.
+	 */
+	public DriftModel getDriftModel() {
+		return mDriftModel;
+	}
+
+	public void setDriftModel(DriftModel driftModel) {
+		mDriftModel = driftModel;
+	}
+
+	/**
+	 * @return The degree of the {@link DriftModel#POLYNOMIAL} drift model.
+	 */
+	public int getDriftDegree() {
+		return mDriftDegree;
+	}
+
+	public void setDriftDegree(int driftDegree) {
+		mDriftDegree = driftDegree;
+	}
+
+	/**
+	 * @return Whether the stages that can use the loops of {@link NumericKernels} do, rather
+	 * 			than their plain per value loops. Only there to compare the two.
+	 */
+	public boolean getVectorizedKernels() {
+		return mVectorizedKernels;
+	}
+
+	public void setVectorizedKernels(boolean vectorizedKernels) {
+		mVectorizedKernels = vectorizedKernels;
+	}
+
+	/**
+	 * @return Whether the {@link ProcessingPipeline} fuses its stages into shared passes,
+	 * 			rather than running each stage over the whole series on its own. Only
+	 * 			there to compare the two.
+	 */
+	public boolean getFusedPipeline() {
+		return mFusedPipeline;
+	}
+
+	public void setFusedPipeline(boolean fusedPipeline) {
+		mFusedPipeline = fusedPipeline;
+	}
+
+	/**
+	 * @return Whether the outlier passes after the first only rescan what the pass before
+	 * 			changed and stop once a pass changes nothing, rather than each being a full
+	 * 			pass of its own. Only there to compare the two.
+	 */
+	public boolean getIncrementalOutliers() {
+		return mIncrementalOutliers;
+	}
+
+	public void setIncrementalOutliers(boolean incrementalOutliers) {
+		mIncrementalOutliers = incrementalOutliers;
+	}
+
+	/**
+	 * @return The deflate level the graph image is written with, from 0 (fastest) to
+	 * 			{@link PngWriter#MAX_COMPRESSION_LEVEL} (smallest).
+	 */
+	public int getImageCompressionLevel() {
+		return mImageCompressionLevel;
+	}
+
+	public void setImageCompressionLevel(int imageCompressionLevel) {
+		mImageCompressionLevel = imageCompressionLevel;
+	}
+}
@@ -0,0 +1,127 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ProcessingPipeline runs a list of {@link ProcessingStage}s over a series in as few
+ * passes as their kinds allow. Pointwise and windowed stages don't need to wait for the
+ * whole series, so every stage from one global stage up to the next shares a pass. The
+ * statistics the next global stage needs are gathered in that same pass, so each global
+ * stage costs one extra pass and the rest cost none.
+ *
+ * A pass walks the series in blocks of {@link #BLOCK_SIZE} samples, running every stage
+ * of the pass over a block before moving on, so the block is still in cache for each of
+ * them. A windowed stage runs behind the stages before it by its lookahead, so the
+ * samples it reads ahead have already been produced.
+ */
+public class ProcessingPipeline
+{
+	/** Samples per block, 32 KB of doubles, so a block stays in the L1/L2 cache **/
+	public static final int BLOCK_SIZE = 4096;
+
+	private final List<ProcessingStage> mStages = new ArrayList<ProcessingStage>();
+	private boolean mFused = true;
+
+	/**
+	 * Appends a stage to the end of the pipeline.
+	 */
+	public void add(ProcessingStage stage) {
+		mStages.add(stage);
+	}
+
+	public boolean isEmpty() {
+		return mStages.isEmpty();
+	}
+
+	/**
+	 * Sets whether stages share passes. When they don't, each stage runs over the whole
+	 * series before the next one starts, the way the steps ran before they were fused,
+	 * and a global stage accumulates in a pass of its own.
+	 */
+	public void setFused(boolean fused) {
+		mFused = fused;
+	}
+
+	/**
+	 * Runs every stage over the series in place.
+	 */
+	public void run(DoubleSeries values) {
+		if (!mFused) {
+			runUnfused(values);
+			return;
+		}
+		int first = 0;
+		while (first < mStages.size()) {
+			/** A global stage starts the pass after the one that accumulated it **/
+			int last = first;
+			if (first > 0) {
+				last++;
+			}
+			while (last < mStages.size() &&
+					mStages.get(last).getKind() != ProcessingStage.Kind.GLOBAL) {
+				last++;
+			}
+			ProcessingStage next = last < mStages.size() ? mStages.get(last) : null;
+			runPass(values, mStages.subList(first, last), next);
+			if (next != null) {
+				next.prepare(values);
+			}
+			first = last;
+		}
+	}
+
+	private void runUnfused(DoubleSeries values) {
+		List<ProcessingStage> none = Collections.emptyList();
+		for (int i = 0; i < mStages.size(); ++i) {
+			ProcessingStage stage = mStages.get(i);
+			if (stage.getKind() == ProcessingStage.Kind.GLOBAL) {
+				runPass(values, none, stage);
+				stage.prepare(values);
+			}
+			runPass(values, Collections.singletonList(stage), null);
+		}
+	}
+
+	/**
+	 * Runs the stages of a pass over the series block by block.
+	 *
+	 * @param stages The stages that process the series in this pass.
+	 * @param next The global stage that accumulates the output of the pass, if any.
+	 */
+	private void runPass(DoubleSeries values, List<ProcessingStage> stages,
+			ProcessingStage next) {
+		int size = values.size();
+		/** How far behind the start of the block each stage runs **/
+		int[] lags = new int[stages.size()];
+		int lag = 0;
+		for (int i = 0; i < stages.size(); ++i) {
+			ProcessingStage stage = stages.get(i);
+			stage.begin(values);
+			lag += stage.getLookahead();
+			lags[i] = lag;
+		}
+		for (int blockStart = 0; blockStart - lag < size; blockStart += BLOCK_SIZE) {
+			int blockEnd = blockStart + BLOCK_SIZE;
+			for (int i = 0; i < stages.size(); ++i) {
+				int from = clamp(blockStart - lags[i], size);
+				int to = clamp(blockEnd - lags[i], size);
+				if (from < to) {
+					stages.get(i).process(values, from, to);
+				}
+			}
+			if (next != null) {
+				int from = clamp(blockStart - lag, size);
+				int to = clamp(blockEnd - lag, size);
+				if (from < to) {
+					next.accumulate(values, from, to);
+				}
+			}
+		}
+	}
+
+	private static int clamp(int index, int size) {
+		return Math.max(0, Math.min(index, size));
+	}
+}
@@ -0,0 +1,160 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.List;
+
+/**
+ * ProcessingResult is the outcome of analyzing a run with {@link SensorDataProcessor}: the
+ * normalized data, the initial resistance, the max response and kinetics of each exposure
+ * and the ranges the data should be graphed over.
+ */
+public class ProcessingResult
+{
+	private final DoubleSeries mTime;
+	private final DoubleSeries mNormalizedResistances;
+	private final DoubleSeries mConcentrations;
+	private final DoubleSeries mMaxResponses;
+	private final String mGasName;
+	private final double mInitialResistance;
+	private final boolean mBaselineComplete;
+
+	/** Axis values **/
+	private final double mResistanceAxis;
+	private final double mMinResistance;
+	private final double mMaxResistance;
+	private final double mConcentrationAxis;
+	private final double mTimeAxis;
+
+	private final BaselineDrift mBaselineDrift;
+	private final List<ExposureKinetics> mKinetics;
+
+	ProcessingResult(DoubleSeries time, DoubleSeries normalizedResistances,
+			DoubleSeries concentrations, DoubleSeries maxResponses, String gasName,
+			double initialResistance, boolean baselineComplete, double resistanceAxis,
+			double minResistance, double maxResistance, double concentrationAxis,
+			double timeAxis, BaselineDrift baselineDrift, List<ExposureKinetics> kinetics) {
+		mTime = time;
+		mNormalizedResistances = normalizedResistances;
+		mConcentrations = concentrations;
+		mMaxResponses = maxResponses;
+		mGasName = gasName;
+		mInitialResistance = initialResistance;
+		mBaselineComplete = baselineComplete;
+		mResistanceAxis = resistanceAxis;
+		mMinResistance = minResistance;
+		mMaxResistance = maxResistance;
+		mConcentrationAxis = concentrationAxis;
+		mTimeAxis = timeAxis;
+		mBaselineDrift = baselineDrift;
+		mKinetics = kinetics;
+	}
+
+	/**
+	 * @return The time of each sample in minutes.
+	 */
+	public DoubleSeries getTime() {
+		return mTime;
+	}
+
+	/**
+	 * @return The normalized resistance dR/R0 of each sample in percent.
+	 */
+	public DoubleSeries getNormalizedResistances() {
+		return mNormalizedResistances;
+	}
+
+	/**
+	 * @return The concentration of each exposure in ppm.
+	 */
+	public DoubleSeries getConcentrations() {
+		return mConcentrations;
+	}
+
+	/**
+	 * @return The normalized resistance furthest from 0 during each exposure.
+	 */
+	public DoubleSeries getMaxResponses() {
+		return mMaxResponses;
+	}
+
+	public String getGasName() {
+		return mGasName;
+	}
+
+	/**
+	 * @return The initial resistance R0, the average resistance from 45 - 60 min.
+	 */
+	public double getInitialResistance() {
+		return mInitialResistance;
+	}
+
+	/**
+	 * @return Whether the initial resistance is known. Only false while a file that is
+	 * 			still being written hasn't reached the end of the baseline.
+	 */
+	public boolean isBaselineComplete() {
+		return mBaselineComplete;
+	}
+
+	/**
+	 * @return The normalized resistance furthest from 0.
+	 */
+	public double getResistanceAxis() {
+		return mResistanceAxis;
+	}
+
+	/**
+	 * @return The bottom of the resistance axis.
+	 */
+	public double getMinResistance() {
+		return mMinResistance;
+	}
+
+	/**
+	 * @return The top of the resistance axis.
+	 */
+	public double getMaxResistance() {
+		return mMaxResistance;
+	}
+
+	public double getResistanceRange() {
+		return mMaxResistance - mMinResistance;
+	}
+
+	/**
+	 * @return The top of the concentration axis.
+	 */
+	public double getConcentrationAxis() {
+		return mConcentrationAxis;
+	}
+
+	/**
+	 * @return The end of the time axis in minutes.
+	 */
+	public double getTimeAxis() {
+		return mTimeAxis;
+	}
+
+	/**
+	 * @return The baseline drift that was removed from the data, with its fit, or null if
+	 * 			the drift wasn't removed.
+	 */
+	public BaselineDrift getBaselineDrift() {
+		return mBaselineDrift;
+	}
+
+	/**
+	 * @return The kinetics of each exposure, empty for a file that is being followed.
+	 */
+	public List<ExposureKinetics> getKinetics() {
+		return mKinetics;
+	}
+
+	/**
+	 * Releases the time and normalized resistance series if they are stored outside of
+	 * the heap. The result can't be used afterwards.
+	 */
+	public void free() {
+		mTime.free();
+		mNormalizedResistances.free();
+	}
+}
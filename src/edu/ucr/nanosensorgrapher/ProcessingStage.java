@@ -0,0 +1,69 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * ProcessingStage is one step of a {@link ProcessingPipeline}. A stage changes a series in
+ * place, one block of samples at a time, and declares how much of the series it has to
+ * see to do so, which decides how the pipeline can fuse it with the stages around it.
+ *
+ * Blocks are passed to {@link #process(DoubleSeries, int, int)} in order and cover the
+ * series exactly once. A stage that reads values before the one it is processing has to
+ * keep them itself, since later stages in the same pass may already have changed them.
+ */
+public abstract class ProcessingStage
+{
+	public enum Kind
+	{
+		/** Only reads the sample being processed, and any state kept from before it **/
+		POINTWISE,
+		/** Also reads up to {@link ProcessingStage#getLookahead()} samples after it **/
+		WINDOWED,
+		/**
+		 * Needs statistics of the whole series before it can change any of it. The stage
+		 * sees every block through {@link ProcessingStage#accumulate(DoubleSeries, int,
+		 * int)} during the pass before its own.
+		 */
+		GLOBAL
+	}
+
+	private final Kind mKind;
+
+	protected ProcessingStage(Kind kind) {
+		mKind = kind;
+	}
+
+	public Kind getKind() {
+		return mKind;
+	}
+
+	/**
+	 * Returns how many samples past the one being processed a windowed stage reads.
+	 */
+	public int getLookahead() {
+		return 0;
+	}
+
+	/**
+	 * Called with each block of the finished output of the stages before a global stage,
+	 * in order, during the pass before its own. Must not change the series.
+	 */
+	public void accumulate(DoubleSeries values, int from, int to) {
+	}
+
+	/**
+	 * Called once all of the series has been accumulated and before the stage's own pass.
+	 * The whole series can be read, or changed, here.
+	 */
+	public void prepare(DoubleSeries values) {
+	}
+
+	/**
+	 * Called before the first block of the stage's pass.
+	 */
+	public void begin(DoubleSeries values) {
+	}
+
+	/**
+	 * Processes the values from index from (inclusive) to index to (exclusive) in place.
+	 */
+	public abstract void process(DoubleSeries values, int from, int to);
+}
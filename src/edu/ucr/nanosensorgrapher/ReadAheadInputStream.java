@@ -0,0 +1,160 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * ReadAheadInputStream reads an underlying stream on its own thread into a fixed number of
+ * buffers that are handed to the reading thread through a bounded queue. When the
+ * underlying stream is expensive to read (for example a decompressing stream) the work of
+ * producing the bytes overlaps with the work of consuming them.
+ */
+public class ReadAheadInputStream extends InputStream
+{
+	private final InputStream mSource;
+	private final Thread mReaderThread;
+	/** Buffers waiting to be filled by the reader thread **/
+	private final BlockingQueue<Block> mFreeBlocks;
+	/** Buffers filled by the reader thread waiting to be consumed **/
+	private final BlockingQueue<Block> mFilledBlocks;
+
+	private volatile IOException mReadException;
+
+	private Block mCurrentBlock;
+	private int mPosition;
+	private boolean mEndOfStream;
+
+	/**
+	 * Creates the stream and starts reading the source.
+	 *
+	 * @param source The stream to read ahead from. It is closed when this stream is.
+	 * @param blockSize The size of each buffer.
+	 * @param blocks The number of buffers, which bounds how far ahead the source is read.
+	 */
+	public ReadAheadInputStream(InputStream source, int blockSize, int blocks) {
+		mSource = source;
+		mFreeBlocks = new ArrayBlockingQueue<Block>(blocks);
+		mFilledBlocks = new ArrayBlockingQueue<Block>(blocks + 1);
+		for (int i = 0; i < blocks; ++i) {
+			mFreeBlocks.add(new Block(blockSize));
+		}
+		mReaderThread = new Thread(new Runnable()
+		{
+			@Override
+			public void run() {
+				readSource();
+			}
+		});
+		mReaderThread.setDaemon(true);
+		mReaderThread.start();
+	}
+
+	private void readSource() {
+		try {
+			while (true) {
+				Block block = mFreeBlocks.take();
+				block.mLength = 0;
+				int read = 0;
+				while (block.mLength < block.mBytes.length && (read = mSource.read(block.mBytes,
+						block.mLength, block.mBytes.length - block.mLength)) != -1) {
+					block.mLength += read;
+				}
+				if (block.mLength > 0) {
+					mFilledBlocks.put(block);
+				}
+				if (read == -1) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			mReadException = e;
+		} catch (InterruptedException e) {
+			/** The stream was closed before the source was fully read **/
+			return;
+		}
+		/** An empty block marks the end of the source **/
+		try {
+			mFilledBlocks.put(new Block(0));
+		} catch (InterruptedException e) {
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextBlock()) {
+			return -1;
+		}
+		return mCurrentBlock.mBytes[mPosition++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!nextBlock()) {
+			return -1;
+		}
+		int read = Math.min(length, mCurrentBlock.mLength - mPosition);
+		System.arraycopy(mCurrentBlock.mBytes, mPosition, bytes, offset, read);
+		mPosition += read;
+		return read;
+	}
+
+	/**
+	 * Makes sure mCurrentBlock has unread bytes, recycling it and waiting for the next
+	 * filled block if needed.
+	 *
+	 * @return False if the end of the source was reached.
+	 */
+	private boolean nextBlock() throws IOException {
+		if (mCurrentBlock != null && mPosition < mCurrentBlock.mLength) {
+			return true;
+		}
+		if (mEndOfStream) {
+			return false;
+		}
+		if (mCurrentBlock != null) {
+			mFreeBlocks.add(mCurrentBlock);
+			mCurrentBlock = null;
+		}
+		try {
+			mCurrentBlock = mFilledBlocks.take();
+		} catch (InterruptedException e) {
+			throw (new IOException(e));
+		}
+		mPosition = 0;
+		if (mCurrentBlock.mLength == 0) {
+			mEndOfStream = true;
+			mCurrentBlock = null;
+			if (mReadException != null) {
+				throw mReadException;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		mReaderThread.interrupt();
+		try {
+			mReaderThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		mSource.close();
+	}
+
+	private static class Block
+	{
+		private final byte[] mBytes;
+		private int mLength;
+
+		public Block(int size) {
+			mBytes = new byte[size];
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * SensorData holds the two columns of a data file, time (seconds) and resistance, as
+ * {@link DoubleSeries} so that no value is boxed while a file is being read. The columns
+ * can be stored outside of the heap, in which case {@link #free()} must be called once the
+ * data is no longer needed.
+ */
+public class SensorData
+{
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private final DoubleSeries mTimes;
+	private final DoubleSeries mResistances;
+
+	public SensorData() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public SensorData(int capacity) {
+		this(capacity, false);
+	}
+
+	/**
+	 * @param capacity The number of samples the columns can hold before they have to grow.
+	 * @param direct Whether the columns are stored outside of the heap.
+	 */
+	public SensorData(int capacity, boolean direct) {
+		mTimes = DoubleSeries.allocate(capacity, direct);
+		mResistances = DoubleSeries.allocate(capacity, direct);
+	}
+
+	/**
+	 * Creates a SensorData that uses the passed in series as its columns.
+	 *
+	 * @param times The time column.
+	 * @param resistances The resistance column, the same size as the time column.
+	 */
+	public SensorData(DoubleSeries times, DoubleSeries resistances) {
+		mTimes = times;
+		mResistances = resistances;
+	}
+
+	/**
+	 * Appends a single sample to the end of both columns.
+	 *
+	 * @param time The time in seconds.
+	 * @param resistance The resistance in ohms.
+	 */
+	public void add(double time, double resistance) {
+		mTimes.add(time);
+		mResistances.add(resistance);
+	}
+
+	/**
+	 * Appends every sample of the passed in {@link SensorData} to the end of this one.
+	 *
+	 * @param data The samples to append.
+	 */
+	public void addAll(SensorData data) {
+		mTimes.addAll(data.mTimes);
+		mResistances.addAll(data.mResistances);
+	}
+
+	public int size() {
+		return mTimes.size();
+	}
+
+	public double getTime(int index) {
+		return mTimes.get(index);
+	}
+
+	public double getResistance(int index) {
+		return mResistances.get(index);
+	}
+
+	public DoubleSeries getTimes() {
+		return mTimes;
+	}
+
+	public DoubleSeries getResistances() {
+		return mResistances;
+	}
+
+	public boolean isDirect() {
+		return mTimes.isDirect();
+	}
+
+	/**
+	 * Releases the columns if they are stored outside of the heap. The data can't be used
+	 * afterwards.
+	 */
+	public void free() {
+		mTimes.free();
+		mResistances.free();
+	}
+}
@@ -0,0 +1,261 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * SensorDataCache stores the parsed columns of a data file in a binary file next to it so
+ * that later runs over the same file can map the columns instead of parsing the text.
+ *
+ * The cache file is little endian and laid out as:
+ * 	int magic, int version, long source size, long source last modified time,
+ * 	long sample count, long checksum, double[count] times, double[count] resistances
+ *
+ * A cache is only used if the size and last modified time of the source still match and
+ * the checksum of the columns is correct; otherwise it is ignored and rewritten. Columns
+ * loaded off-heap are used straight from the mapped cache file without being copied.
+ */
+public class SensorDataCache
+{
+	/** Extension appended to the data file name to get the cache file name **/
+	public static final String CACHE_EXTENSION = ".nsgcache";
+	/** Extension appended to the cache file name while it is being written **/
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	private static final int MAGIC = 0x4E534743;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 40;
+	private static final int BYTES_PER_SAMPLE = 2 * 8;
+	/** Number of doubles written to the cache file at a time **/
+	private static final int WRITE_BUFFER_DOUBLES = 64 * 1024;
+	private static final long CHECKSUM_MULTIPLIER = 0x9E3779B97F4A7C15L;
+	/** Largest region mapped at a time, FileChannel.map can't map more than 2 GB at once **/
+	private static final long MAP_WINDOW_BYTES = 1L << 30;
+
+	private SensorDataCache() {
+	}
+
+	/**
+	 * Returns the cache file for the passed in data file.
+	 */
+	public static File getCacheFile(File source) {
+		return new File(source.getParentFile(), source.getName() + CACHE_EXTENSION);
+	}
+
+	/**
+	 * Returns whether the passed in file is a cache file, or a temporary cache file left
+	 * behind by a store that didn't finish.
+	 */
+	public static boolean isCacheFile(File file) {
+		String name = file.getName();
+		return name.endsWith(CACHE_EXTENSION) || name.endsWith(CACHE_EXTENSION + TEMP_EXTENSION);
+	}
+
+	public static SensorData load(File source) {
+		return load(source, false);
+	}
+
+	/**
+	 * Loads the cached columns of the passed in data file.
+	 *
+	 * @param source The data file.
+	 * @param direct Whether to use the columns in place from the mapped cache file rather
+	 * 			than copying them onto the heap.
+	 * @return The cached columns, or null if there is no valid cache for the file.
+	 */
+	public static SensorData load(File source, boolean direct) {
+		File cacheFile = getCacheFile(source);
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+		try {
+			FileInputStream input = new FileInputStream(cacheFile);
+			try {
+				return load(input.getChannel(), source, direct);
+			} finally {
+				input.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} catch (RuntimeException e) {
+			/** A cache that can't be mapped is treated like a missing one **/
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static SensorData load(FileChannel channel, File source, boolean direct)
+			throws IOException {
+		long cacheSize = channel.size();
+		if (cacheSize < HEADER_SIZE) {
+			return null;
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining() && channel.read(header) != -1) {
+		}
+		header.flip();
+		if (header.getInt() != MAGIC || header.getInt() != VERSION ||
+				header.getLong() != source.length() ||
+				header.getLong() != source.lastModified()) {
+			return null;
+		}
+		long count = header.getLong();
+		long checksum = header.getLong();
+		if (count < 0 || count > Integer.MAX_VALUE ||
+				cacheSize != HEADER_SIZE + count * BYTES_PER_SAMPLE) {
+			return null;
+		}
+
+		int size = (int) count;
+		SensorData data;
+		if (size == 0) {
+			data = new SensorData(0, direct);
+		} else if (direct) {
+			/** Each column gets its own mapping so it can be unmapped on its own **/
+			long columnSize = count * BYTES_PER_SAMPLE / 2;
+			if (columnSize > Integer.MAX_VALUE) {
+				/** Too large for a single mapping, parse the file instead **/
+				return null;
+			}
+			data = new SensorData(
+					DoubleSeries.wrap(channel.map(MapMode.READ_ONLY, HEADER_SIZE, columnSize)
+							.order(ByteOrder.LITTLE_ENDIAN)),
+					DoubleSeries.wrap(channel.map(MapMode.READ_ONLY, HEADER_SIZE + columnSize,
+							columnSize).order(ByteOrder.LITTLE_ENDIAN)));
+		} else {
+			double[] times = new double[size];
+			double[] resistances = new double[size];
+			readColumn(channel, HEADER_SIZE, times);
+			readColumn(channel, HEADER_SIZE + count * BYTES_PER_SAMPLE / 2, resistances);
+			data = new SensorData(DoubleSeries.wrap(times, size),
+					DoubleSeries.wrap(resistances, size));
+		}
+		if (checksum(data) != checksum) {
+			data.free();
+			return null;
+		}
+		return data;
+	}
+
+	/**
+	 * Writes the columns parsed from the passed in data file to its cache file. The cache
+	 * is written to a temporary file first so a partially written cache is never read.
+	 *
+	 * The size and last modified time must be read before the file is parsed; if the file
+	 * changes while it is parsed the cache then no longer matches it and isn't used.
+	 *
+	 * @param source The data file the columns were parsed from.
+	 * @param sourceSize The size of the data file before it was parsed.
+	 * @param sourceLastModified The last modified time of the data file before it was parsed.
+	 * @param data The parsed columns.
+	 * @throws IOException If the cache file can't be written.
+	 */
+	public static void store(File source, long sourceSize, long sourceLastModified,
+			SensorData data) throws IOException {
+		File cacheFile = getCacheFile(source);
+		File tempFile = new File(cacheFile.getPath() + TEMP_EXTENSION);
+		int size = data.size();
+		boolean written = false;
+		RandomAccessFile output = new RandomAccessFile(tempFile, "rw");
+		try {
+			output.setLength(0);
+			FileChannel channel = output.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_DOUBLES * 8)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			channel.position(HEADER_SIZE);
+			double[] scratch = new double[WRITE_BUFFER_DOUBLES];
+			writeColumn(channel, buffer, scratch, data.getTimes());
+			writeColumn(channel, buffer, scratch, data.getResistances());
+
+			buffer.clear();
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putLong(sourceSize);
+			buffer.putLong(sourceLastModified);
+			buffer.putLong(size);
+			buffer.putLong(checksum(data));
+			buffer.flip();
+			channel.position(0);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			written = true;
+		} finally {
+			output.close();
+			if (!written) {
+				tempFile.delete();
+			}
+		}
+		if (!cacheFile.delete() && cacheFile.exists() || !tempFile.renameTo(cacheFile)) {
+			tempFile.delete();
+			throw (new IOException("Unable to replace " + cacheFile.getAbsolutePath()));
+		}
+	}
+
+	/**
+	 * Deletes the cache file of the passed in data file if there is one.
+	 *
+	 * @return Whether a cache file was deleted.
+	 */
+	public static boolean purge(File source) {
+		File cacheFile = getCacheFile(source);
+		return cacheFile.isFile() && cacheFile.delete();
+	}
+
+	/**
+	 * Copies a column of the cache file into the passed in array, mapping at most
+	 * MAP_WINDOW_BYTES at a time.
+	 */
+	private static void readColumn(FileChannel channel, long position, double[] values)
+			throws IOException {
+		int windowDoubles = (int) (MAP_WINDOW_BYTES / 8);
+		for (int i = 0; i < values.length; i += windowDoubles) {
+			int length = Math.min(windowDoubles, values.length - i);
+			channel.map(MapMode.READ_ONLY, position + (long) i * 8, (long) length * 8)
+					.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values, i, length);
+		}
+	}
+
+	private static void writeColumn(FileChannel channel, ByteBuffer buffer, double[] scratch,
+			DoubleSeries values) throws IOException {
+		buffer.clear();
+		DoubleBuffer doubleBuffer = buffer.asDoubleBuffer();
+		int size = values.size();
+		for (int i = 0; i < size; i += WRITE_BUFFER_DOUBLES) {
+			int length = Math.min(WRITE_BUFFER_DOUBLES, size - i);
+			values.get(i, scratch, 0, length);
+			doubleBuffer.clear();
+			doubleBuffer.put(scratch, 0, length);
+			buffer.clear();
+			buffer.limit(length * 8);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * A 64 bit checksum of the raw bits of both columns.
+	 */
+	private static long checksum(SensorData data) {
+		DoubleSeries times = data.getTimes();
+		DoubleSeries resistances = data.getResistances();
+		int size = data.size();
+		long checksum = size;
+		for (int i = 0; i < size; ++i) {
+			checksum = (checksum ^ Double.doubleToRawLongBits(times.get(i))) *
+					CHECKSUM_MULTIPLIER;
+			checksum = (checksum ^ Double.doubleToRawLongBits(resistances.get(i))) *
+					CHECKSUM_MULTIPLIER;
+		}
+		return checksum;
+	}
+}
@@ -0,0 +1,96 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * SensorDataFollower follows a data file that is still being written by the instrument.
+ * Each {@link #poll()} parses only the bytes appended since the previous poll and adds
+ * the new samples to the end of the same {@link SensorData}. A line is only parsed once
+ * its line terminator has been written.
+ */
+public class SensorDataFollower
+{
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File mFile;
+	private final SensorData mData;
+
+	private FileInputStream mInput;
+	private FileChannel mChannel;
+	/** Position in the file of the first byte that hasn't been read **/
+	private long mPosition;
+
+	/** Bytes read from the file that don't form a complete line yet **/
+	private byte[] mBuffer;
+	private ByteBuffer mWrappedBuffer;
+	private int mLength;
+
+	public SensorDataFollower(File file) {
+		mFile = file;
+		mData = new SensorData();
+		mBuffer = new byte[BUFFER_SIZE];
+		mWrappedBuffer = ByteBuffer.wrap(mBuffer);
+	}
+
+	/**
+	 * Reads and parses the lines appended to the file since the last poll.
+	 *
+	 * @return The number of samples added to {@link #getData()}.
+	 * @throws IOException If the file can't be read or was truncated.
+	 * @throws FileException If a new line is malformed.
+	 */
+	public int poll() throws IOException, FileException {
+		if (mChannel == null) {
+			mInput = new FileInputStream(mFile);
+			mChannel = mInput.getChannel();
+		}
+		long size = mChannel.size();
+		if (size < mPosition) {
+			throw (new IOException(mFile.getAbsolutePath() + " was truncated"));
+		}
+		int previousSize = mData.size();
+		while (mPosition < size) {
+			if (mLength == mBuffer.length) {
+				/** A single line is longer than the buffer **/
+				mBuffer = Arrays.copyOf(mBuffer, mBuffer.length * 2);
+				mWrappedBuffer = ByteBuffer.wrap(mBuffer);
+			}
+			mWrappedBuffer.limit(mBuffer.length);
+			mWrappedBuffer.position(mLength);
+			int read = mChannel.read(mWrappedBuffer, mPosition);
+			if (read <= 0) {
+				break;
+			}
+			mPosition += read;
+			mLength += read;
+			int consumed = SensorDataParser.parseLines(mWrappedBuffer, 0, mLength, false, mData);
+			mLength -= consumed;
+			System.arraycopy(mBuffer, consumed, mBuffer, 0, mLength);
+		}
+		return mData.size() - previousSize;
+	}
+
+	/**
+	 * Returns every sample parsed from the file so far.
+	 */
+	public SensorData getData() {
+		return mData;
+	}
+
+	public void close() {
+		if (mInput != null) {
+			try {
+				mInput.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			mInput = null;
+			mChannel = null;
+		}
+	}
+}
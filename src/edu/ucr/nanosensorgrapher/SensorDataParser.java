@@ -0,0 +1,704 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * SensorDataParser reads the tab delimited time/resistance data files straight from their
+ * bytes. Lines are tokenized in place and the decimal values are parsed without creating
+ * any Strings, so the only allocations are the growing {@link SensorData} columns.
+ *
+ * Files of at least {@link #MAPPED_THRESHOLD} bytes are memory mapped and parsed region by
+ * region straight out of the page cache; smaller files are streamed through a buffer. Mapped
+ * files are split into newline aligned chunks that are parsed in parallel on a shared
+ * fork-join pool and then stitched back together in file order.
+ *
+ * Gzip, zip and zlib compressed files are recognized by their magic bytes and decompressed
+ * on a separate thread while the decompressed bytes are parsed, so reading a compressed
+ * file takes about as long as the slower of the two rather than both added together.
+ *
+ * A line is valid if, after trimming, it holds exactly two tab separated numbers. Anything
+ * else (including blank lines) causes a {@link FileException}, the same as when the file
+ * was read with {@link java.io.BufferedReader#readLine()} and {@link String#split(String)}.
+ */
+public class SensorDataParser
+{
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** Files of this size or larger are memory mapped instead of streamed **/
+	public static final long MAPPED_THRESHOLD = 32L * 1024 * 1024;
+	/** Size of each mapped region of a memory mapped file **/
+	private static final long MAPPED_REGION_SIZE = 256L * 1024 * 1024;
+	/** Smallest chunk of a mapped file that is worth parsing on its own thread **/
+	private static final long MIN_CHUNK_SIZE = 8L * 1024 * 1024;
+	/** Number of chunks per pool thread, so faster threads can pick up the slack **/
+	private static final int CHUNKS_PER_THREAD = 2;
+	/** Number of bytes read at a time while looking for the end of a line **/
+	private static final int BOUNDARY_SCAN_SIZE = 4 * 1024;
+	/** Number of decompressed buffers that can be waiting to be parsed **/
+	private static final int DECOMPRESSION_BUFFERS = 4;
+	/** Rough compression ratio of a data file, used to size the columns up front **/
+	private static final int ESTIMATED_COMPRESSION_RATIO = 4;
+
+	/** Number of bytes read from the start of a file to detect its compression **/
+	private static final int COMPRESSION_PROBE_SIZE = 512;
+	/** File extensions of compressed data files, stripped to get the data file name **/
+	public static final String[] COMPRESSED_EXTENSIONS = { ".gz", ".zip" };
+	/** Rough number of bytes per line, used to size the columns up front **/
+	private static final int ESTIMATED_LINE_LENGTH = 16;
+
+	/** Largest number of significant digits that is always exact in a double **/
+	private static final int MAX_FAST_PATH_DIGITS = 15;
+	/** Largest exponent value that is exactly representable as a double **/
+	private static final int MAX_FAST_PATH_EXPONENT = 22;
+	private static final int MAX_EXPONENT_DIGITS_VALUE = 9999;
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+		};
+
+	/** Pool shared by every file being parsed so the cores aren't oversubscribed **/
+	private static final ForkJoinPool PARSE_POOL = new ForkJoinPool();
+
+	private enum Compression {
+		NONE, GZIP, ZIP, ZLIB
+	}
+
+	private SensorDataParser() {
+	}
+
+	/**
+	 * Parses the passed in data file, decompressing it if it is compressed and memory
+	 * mapping it if it is at least {@link #MAPPED_THRESHOLD} bytes.
+	 *
+	 * @param file The file to parse.
+	 * @return The time and resistance columns of the file.
+	 * @throws IOException If the file can't be read.
+	 * @throws FileException If a line of the file is malformed.
+	 */
+	public static SensorData parse(File file) throws IOException, FileException {
+		return parse(file, false);
+	}
+
+	/**
+	 * Parses the passed in data file, decompressing it if it is compressed and memory
+	 * mapping it if it is at least {@link #MAPPED_THRESHOLD} bytes.
+	 *
+	 * @param file The file to parse.
+	 * @param direct Whether the columns are stored outside of the heap, in which case the
+	 * 			caller has to {@link SensorData#free()} them.
+	 * @return The time and resistance columns of the file.
+	 * @throws IOException If the file can't be read.
+	 * @throws FileException If a line of the file is malformed.
+	 */
+	public static SensorData parse(File file, boolean direct) throws IOException, FileException {
+		Compression compression = detectCompression(file);
+		if (compression != Compression.NONE) {
+			return parseCompressed(file, compression, direct);
+		}
+		if (file.length() >= MAPPED_THRESHOLD) {
+			return parseMapped(file, direct);
+		}
+		InputStream input = new FileInputStream(file);
+		try {
+			return parse(input, estimateSamples(file.length()), direct);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Parses the passed in data file by memory mapping it. The bytes are read directly
+	 * from the mapped regions without being copied or decoded. Large files are split into
+	 * chunks that are parsed in parallel.
+	 *
+	 * @param file The file to parse.
+	 * @param direct Whether the columns are stored outside of the heap.
+	 * @return The time and resistance columns of the file.
+	 * @throws IOException If the file can't be mapped.
+	 * @throws FileException If a line of the file is malformed.
+	 */
+	public static SensorData parseMapped(File file, boolean direct)
+			throws IOException, FileException {
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			long size = channel.size();
+			long[] boundaries = findChunkBoundaries(channel, size);
+			if (boundaries.length == 2) {
+				SensorData data = new SensorData(estimateSamples(size), direct);
+				boolean parsed = false;
+				try {
+					parseMapped(channel, 0, size, data);
+					parsed = true;
+				} finally {
+					if (!parsed) {
+						data.free();
+					}
+				}
+				return data;
+			}
+			return parseChunks(channel, boundaries, direct);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Parses each chunk on the parse pool and stitches the columns together in order.
+	 *
+	 * @param channel The channel of the file being parsed.
+	 * @param boundaries The start of each chunk followed by the end of the last chunk.
+	 * @param direct Whether the columns are stored outside of the heap.
+	 */
+	private static SensorData parseChunks(FileChannel channel, long[] boundaries,
+			boolean direct) throws IOException, FileException {
+		ParseChunkTask[] tasks = new ParseChunkTask[boundaries.length - 1];
+		for (int i = 0; i < tasks.length; ++i) {
+			tasks[i] = new ParseChunkTask(channel, boundaries[i], boundaries[i + 1], direct);
+			PARSE_POOL.execute(tasks[i]);
+		}
+		try {
+			/** Wait for every chunk even after one fails, so none is still running when freed **/
+			int size = 0;
+			RuntimeException failure = null;
+			for (int i = 0; i < tasks.length; ++i) {
+				try {
+					tasks[i].join();
+					size += tasks[i].mData.size();
+				} catch (RuntimeException e) {
+					if (failure == null) {
+						failure = e;
+					} else {
+						failure.addSuppressed(e);
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			for (int i = 0; i < tasks.length; ++i) {
+				if (tasks[i].mIOException != null) {
+					throw tasks[i].mIOException;
+				} else if (tasks[i].mFileException != null) {
+					throw tasks[i].mFileException;
+				}
+			}
+			SensorData data = new SensorData(size, direct);
+			for (int i = 0; i < tasks.length; ++i) {
+				data.addAll(tasks[i].mData);
+				/** Release the partial columns while the rest are copied **/
+				tasks[i].mData.free();
+				tasks[i].mData = null;
+			}
+			return data;
+		} finally {
+			for (int i = 0; i < tasks.length; ++i) {
+				if (tasks[i].mData != null) {
+					tasks[i].mData.free();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Splits the file into roughly equal chunks, one or more per pool thread, with every
+	 * chunk starting at the beginning of a line.
+	 *
+	 * @return The start of each chunk followed by the size of the file.
+	 */
+	private static long[] findChunkBoundaries(FileChannel channel, long size)
+			throws IOException {
+		int chunks = (int) Math.min(size / MIN_CHUNK_SIZE,
+				PARSE_POOL.getParallelism() * CHUNKS_PER_THREAD);
+		if (chunks <= 1) {
+			return new long[] { 0, size };
+		}
+		long[] boundaries = new long[chunks + 1];
+		int count = 1;
+		ByteBuffer scanBuffer = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+		for (int i = 1; i < chunks; ++i) {
+			long boundary = findLineStart(channel, size * i / chunks, size, scanBuffer);
+			if (boundary > boundaries[count - 1] && boundary < size) {
+				boundaries[count++] = boundary;
+			}
+		}
+		boundaries[count++] = size;
+		return Arrays.copyOf(boundaries, count);
+	}
+
+	/**
+	 * Returns the position of the first line that starts at or after position, or size if
+	 * there is none.
+	 */
+	private static long findLineStart(FileChannel channel, long position, long size,
+			ByteBuffer scanBuffer) throws IOException {
+		/** Start at the previous byte in case position is already the start of a line **/
+		long scanPosition = position - 1;
+		boolean carriageReturn = false;
+		while (scanPosition < size) {
+			scanBuffer.clear();
+			int read = channel.read(scanBuffer, scanPosition);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; ++i) {
+				byte c = scanBuffer.get(i);
+				if (carriageReturn) {
+					/** A "\r" on its own ends the line, a "\r\n" pair ends after the "\n" **/
+					return c == '\n' ? scanPosition + i + 1 : scanPosition + i;
+				} else if (c == '\n') {
+					return scanPosition + i + 1;
+				} else if (c == '\r') {
+					carriageReturn = true;
+				}
+			}
+			scanPosition += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Parses the lines between start and end of the channel one mapped region at a time.
+	 * A line that crosses the end of a region is left unconsumed and the next region is
+	 * mapped starting from the beginning of that line.
+	 *
+	 * @param channel The channel to map.
+	 * @param start The file position of the first byte of the first line.
+	 * @param end The file position after the last line.
+	 * @param data The columns to append to.
+	 */
+	static void parseMapped(FileChannel channel, long start, long end, SensorData data)
+			throws IOException, FileException {
+		long position = start;
+		while (position < end) {
+			int regionSize = (int) Math.min(MAPPED_REGION_SIZE, end - position);
+			boolean lastRegion = position + regionSize == end;
+			MappedByteBuffer region = channel.map(MapMode.READ_ONLY, position, regionSize);
+			int consumed = parseLines(region, 0, regionSize, lastRegion, data);
+			if (consumed == 0 && !lastRegion) {
+				/** A single line is longer than a whole region **/
+				throw (new FileException());
+			}
+			position += consumed;
+		}
+	}
+
+	/**
+	 * Parses a compressed data file. The file is decompressed by a {@link
+	 * ReadAheadInputStream} so that decompressing and parsing run on separate threads.
+	 */
+	private static SensorData parseCompressed(File file, Compression compression,
+			boolean direct) throws IOException, FileException {
+		InputStream input = new FileInputStream(file);
+		InputStream decompressed;
+		try {
+			if (compression == Compression.GZIP) {
+				decompressed = new GZIPInputStream(input, BUFFER_SIZE);
+			} else if (compression == Compression.ZLIB) {
+				decompressed = new InflaterInputStream(input);
+			} else {
+				ZipInputStream zipInput = new ZipInputStream(input);
+				/** Only the first file of a zip archive is parsed **/
+				ZipEntry entry = zipInput.getNextEntry();
+				while (entry != null && entry.isDirectory()) {
+					entry = zipInput.getNextEntry();
+				}
+				if (entry == null) {
+					throw (new FileException());
+				}
+				decompressed = zipInput;
+			}
+		} catch (IOException e) {
+			input.close();
+			throw e;
+		} catch (FileException e) {
+			input.close();
+			throw e;
+		}
+		InputStream readAhead = new ReadAheadInputStream(decompressed, BUFFER_SIZE,
+				DECOMPRESSION_BUFFERS);
+		try {
+			return parse(readAhead,
+					estimateSamples(file.length() * ESTIMATED_COMPRESSION_RATIO), direct);
+		} finally {
+			readAhead.close();
+		}
+	}
+
+	/**
+	 * Checks the first bytes of the file for the gzip, zip or zlib headers. The zlib header
+	 * is only two bytes and some plain text lines start with one, so a zlib stream must
+	 * also inflate without errors.
+	 */
+	private static Compression detectCompression(File file) throws IOException {
+		byte[] magic = new byte[COMPRESSION_PROBE_SIZE];
+		int length = 0;
+		InputStream input = new FileInputStream(file);
+		try {
+			int read;
+			while (length < magic.length &&
+					(read = input.read(magic, length, magic.length - length)) != -1) {
+				length += read;
+			}
+		} finally {
+			input.close();
+		}
+		int first = magic[0] & 0xFF;
+		int second = magic[1] & 0xFF;
+		if (length >= 2 && first == 0x1F && second == 0x8B) {
+			return Compression.GZIP;
+		} else if (length >= 4 && first == 'P' && second == 'K' && magic[2] == 3 &&
+				magic[3] == 4) {
+			return Compression.ZIP;
+		} else if (length > 2 && isZlibHeader(first, second) && inflates(magic, length)) {
+			return Compression.ZLIB;
+		}
+		return Compression.NONE;
+	}
+
+	/**
+	 * Whether the bytes are a zlib header for a deflate stream without a preset dictionary.
+	 */
+	private static boolean isZlibHeader(int first, int second) {
+		int method = first & 0x0F;
+		int windowBits = first >> 4;
+		boolean presetDictionary = (second & 0x20) != 0;
+		return method == 8 && windowBits <= 7 && !presetDictionary &&
+				(first << 8 | second) % 31 == 0;
+	}
+
+	/**
+	 * Whether the start of a zlib stream inflates to at least one byte without errors.
+	 */
+	private static boolean inflates(byte[] bytes, int length) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(bytes, 0, length);
+			byte[] output = new byte[COMPRESSION_PROBE_SIZE];
+			int inflated = 0;
+			while (!inflater.finished() && !inflater.needsInput() && inflated < output.length) {
+				int count = inflater.inflate(output, inflated, output.length - inflated);
+				if (count == 0) {
+					break;
+				}
+				inflated += count;
+			}
+			return inflated > 0;
+		} catch (DataFormatException e) {
+			return false;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Returns the file name without a trailing compressed file extension, for example
+	 * "data.txt" for "data.txt.gz".
+	 */
+	public static String stripCompressedExtension(String fileName) {
+		for (int i = 0; i < COMPRESSED_EXTENSIONS.length; ++i) {
+			if (fileName.toLowerCase().endsWith(COMPRESSED_EXTENSIONS[i])) {
+				return fileName.substring(0,
+						fileName.length() - COMPRESSED_EXTENSIONS[i].length());
+			}
+		}
+		return fileName;
+	}
+
+	/**
+	 * Parses data from the passed in stream until the end of the stream is reached. The
+	 * stream is not closed.
+	 *
+	 * @param input The stream to read from.
+	 * @param expectedSamples The expected number of samples, used as the initial capacity.
+	 * @return The time and resistance columns read from the stream.
+	 */
+	public static SensorData parse(InputStream input, int expectedSamples)
+			throws IOException, FileException {
+		return parse(input, expectedSamples, false);
+	}
+
+	/**
+	 * Parses data from the passed in stream until the end of the stream is reached. The
+	 * stream is not closed.
+	 *
+	 * @param input The stream to read from.
+	 * @param expectedSamples The expected number of samples, used as the initial capacity.
+	 * @param direct Whether the columns are stored outside of the heap.
+	 * @return The time and resistance columns read from the stream.
+	 */
+	public static SensorData parse(InputStream input, int expectedSamples, boolean direct)
+			throws IOException, FileException {
+		SensorData data = new SensorData(expectedSamples, direct);
+		boolean parsed = false;
+		try {
+			parseStream(input, data);
+			parsed = true;
+		} finally {
+			if (!parsed) {
+				data.free();
+			}
+		}
+		return data;
+	}
+
+	private static void parseStream(InputStream input, SensorData data)
+			throws IOException, FileException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		ByteBuffer wrappedBuffer = ByteBuffer.wrap(buffer);
+		int length = 0;
+		while (true) {
+			if (length == buffer.length) {
+				/** A single line is longer than the buffer **/
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				wrappedBuffer = ByteBuffer.wrap(buffer);
+			}
+			int read = input.read(buffer, length, buffer.length - length);
+			if (read == -1) {
+				break;
+			}
+			length += read;
+			int consumed = parseLines(wrappedBuffer, 0, length, false, data);
+			length -= consumed;
+			System.arraycopy(buffer, consumed, buffer, 0, length);
+		}
+		parseLines(wrappedBuffer, 0, length, true, data);
+	}
+
+	static int estimateSamples(long fileLength) {
+		return (int) Math.min(fileLength / ESTIMATED_LINE_LENGTH + 1, Integer.MAX_VALUE - 8);
+	}
+
+	/**
+	 * Parses every complete line between start and end in the buffer and appends the
+	 * values to data. Lines end with "\n", "\r\n" or "\r", the same as
+	 * {@link java.io.BufferedReader#readLine()}.
+	 *
+	 * @param buffer The buffer holding the raw file bytes.
+	 * @param start The index of the first byte of the first line.
+	 * @param end The index after the last available byte.
+	 * @param endOfInput Whether the bytes after the last line terminator are a final line
+	 * 			rather than the start of a line that continues past end.
+	 * @param data The columns to append to.
+	 * @return The index of the first byte that was not consumed.
+	 * @throws FileException If a line is malformed.
+	 */
+	static int parseLines(ByteBuffer buffer, int start, int end, boolean endOfInput,
+			SensorData data) throws FileException {
+		int lineStart = start;
+		for (int i = start; i < end; ++i) {
+			byte c = buffer.get(i);
+			if (c == '\n' || c == '\r') {
+				int next = i + 1;
+				if (c == '\r') {
+					if (next == end) {
+						if (!endOfInput) {
+							/** The "\n" of a "\r\n" pair might not have been read yet **/
+							return lineStart;
+						}
+					} else if (buffer.get(next) == '\n') {
+						next++;
+					}
+				}
+				parseLine(buffer, lineStart, i, data);
+				lineStart = next;
+				i = next - 1;
+			}
+		}
+		if (endOfInput && lineStart < end) {
+			parseLine(buffer, lineStart, end, data);
+			return end;
+		}
+		return lineStart;
+	}
+
+	/**
+	 * Parses a single line, without its terminator, of the form "time\tresistance".
+	 */
+	private static void parseLine(ByteBuffer buffer, int start, int end, SensorData data)
+			throws FileException {
+		while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+			start++;
+		}
+		while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+			end--;
+		}
+		int tab = -1;
+		for (int i = start; i < end; ++i) {
+			if (buffer.get(i) == '\t') {
+				if (tab != -1) {
+					throw (new FileException());
+				}
+				tab = i;
+			}
+		}
+		if (tab == -1) {
+			throw (new FileException());
+		}
+		data.add(parseDouble(buffer, start, tab), parseDouble(buffer, tab + 1, end));
+	}
+
+	/**
+	 * Parses a decimal number. Plain decimals with up to 15 significant digits and a small
+	 * exponent are converted exactly with a single multiply or divide; anything else is
+	 * handed to {@link Double#parseDouble(String)}.
+	 *
+	 * @throws FileException If the bytes are not a number.
+	 */
+	static double parseDouble(ByteBuffer buffer, int start, int end) throws FileException {
+		while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+			start++;
+		}
+		while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+			end--;
+		}
+		int i = start;
+		boolean negative = false;
+		if (i < end) {
+			byte sign = buffer.get(i);
+			if (sign == '-') {
+				negative = true;
+				i++;
+			} else if (sign == '+') {
+				i++;
+			}
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		byte c = 0;
+		while (i < end && (c = buffer.get(i)) >= '0' && c <= '9') {
+			if (mantissa != 0 || c != '0') {
+				if (++digits > MAX_FAST_PATH_DIGITS) {
+					return parseDoubleSlow(buffer, start, end);
+				}
+				mantissa = mantissa * 10 + (c - '0');
+			}
+			hasDigits = true;
+			i++;
+		}
+		if (i < end && c == '.') {
+			i++;
+			while (i < end && (c = buffer.get(i)) >= '0' && c <= '9') {
+				if (mantissa != 0 || c != '0') {
+					if (++digits > MAX_FAST_PATH_DIGITS) {
+						return parseDoubleSlow(buffer, start, end);
+					}
+					mantissa = mantissa * 10 + (c - '0');
+				}
+				exponent--;
+				hasDigits = true;
+				i++;
+			}
+		}
+		if (!hasDigits) {
+			return parseDoubleSlow(buffer, start, end);
+		}
+		if (i < end && (c == 'e' || c == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < end) {
+				byte sign = buffer.get(i);
+				if (sign == '-') {
+					negativeExponent = true;
+					i++;
+				} else if (sign == '+') {
+					i++;
+				}
+			}
+			int exponentValue = 0;
+			boolean hasExponentDigits = false;
+			while (i < end && (c = buffer.get(i)) >= '0' && c <= '9') {
+				if (exponentValue > MAX_EXPONENT_DIGITS_VALUE) {
+					return parseDoubleSlow(buffer, start, end);
+				}
+				exponentValue = exponentValue * 10 + (c - '0');
+				hasExponentDigits = true;
+				i++;
+			}
+			if (!hasExponentDigits) {
+				return parseDoubleSlow(buffer, start, end);
+			}
+			exponent += negativeExponent ? -exponentValue : exponentValue;
+		}
+		if (i != end) {
+			return parseDoubleSlow(buffer, start, end);
+		}
+
+		double value;
+		if (mantissa == 0) {
+			value = 0.0;
+		} else if (exponent >= 0 && exponent <= MAX_FAST_PATH_EXPONENT) {
+			value = mantissa * POWERS_OF_TEN[exponent];
+		} else if (exponent < 0 && exponent >= -MAX_FAST_PATH_EXPONENT) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		} else {
+			return parseDoubleSlow(buffer, start, end);
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses one newline aligned chunk of a mapped file into its own columns.
+	 */
+	private static class ParseChunkTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel mChannel;
+		private final long mStart;
+		private final long mEnd;
+
+		private SensorData mData;
+		private IOException mIOException;
+		private FileException mFileException;
+
+		public ParseChunkTask(FileChannel channel, long start, long end, boolean direct) {
+			mChannel = channel;
+			mStart = start;
+			mEnd = end;
+			mData = new SensorData(estimateSamples(end - start), direct);
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				parseMapped(mChannel, mStart, mEnd, mData);
+			} catch (IOException e) {
+				mIOException = e;
+			} catch (FileException e) {
+				mFileException = e;
+			}
+		}
+	}
+
+	private static double parseDoubleSlow(ByteBuffer buffer, int start, int end)
+			throws FileException {
+		char[] chars = new char[end - start];
+		for (int i = start; i < end; ++i) {
+			chars[i - start] = (char) (buffer.get(i) & 0xFF);
+		}
+		try {
+			return Double.parseDouble(new String(chars));
+		} catch (NumberFormatException e) {
+			throw (new FileException());
+		}
+	}
+}
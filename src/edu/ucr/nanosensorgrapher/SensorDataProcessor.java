@@ -0,0 +1,811 @@
+package edu.ucr.nanosensorgrapher;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SensorDataProcessor analyzes the time/resistance data of a run without any user
+ * interface. It normalizes the resistances against the initial resistance R0, optionally
+ * removes outliers, baseline drift and noise, finds the max response of each exposure and
+ * works out the ranges the data should be graphed over.
+ *
+ * A complete file is analyzed at once with {@link #process(SensorData, String,
+ * ProcessingOptions)}. A file that is still being written is analyzed as it grows by
+ * passing the data to {@link #append(SensorData)} after every read.
+ */
+public class SensorDataProcessor
+{
+	/** Initial duration to get baseline (60 min) **/
+	public static final double DURATION_BASELINE = 60.0;
+	/** Initial duration to start calculating the initial resistance **/
+	public static final double DURATION_RESISTANCE = 45.0;
+	/** Exposure duration (15 min) **/
+	public static final double DURATION_EXPOSURE = 15.0;
+	/** Recovery duration after each exposure (20 min) **/
+	public static final double DURATION_RECOVERY = 20.0;
+	/** Additional recovery duration after last exposure/recovery set **/
+	public static final double DURATION_END = 40.0;
+
+	private static final String ERROR_NO_BASELINE =
+			"Error: No samples between 45 and 60 min to calculate R0 in: \n";
+
+	/** Number of ticks on each axis, the axis ranges are rounded to fit them **/
+	public static final int TIME_AXIS_TICKS = 10;
+	public static final int RESISTANCE_AXIS_TICKS = 9;
+	private static final int TIME_AXIS_TICK_ROUNDOFF = 5;
+	private static final int RESISTANCE_AXIS_TICK_ROUNDOFF = 10;
+
+	/** Percentage the axis should exceed the max value by **/
+	private static final double AXIS_RESISTANCE_MARGIN = 1.2;
+	private static final double AXIS_CONCENTRATION_MARGIN = 1.25;
+
+	/** The maximum change between two points before it is considered an outlier **/
+	private static final double MAX_DELTA_OUTLIER = 0.2;
+
+	/** Scales a median absolute deviation to a standard deviation for normal data **/
+	static final double MAD_TO_STD = 1.4826;
+
+	/** Values kept on each side of a phase median between outlier passes **/
+	private static final int MEDIAN_BAND_HALF_WIDTH = 256;
+
+	/** The maximum number of standard deviations before a value is considered an outlier. */
+	private static final double MAX_STD_OUTLIER_BASELINE = 2.0;
+	private static final double MAX_STD_OUTLIER_EXPOSURE = 2.5;
+	private static final double MAX_STD_OUTLIER_RECOVERY = 2.5;
+	private static final double MAX_STD_OUTLIER_END = 2.0;
+
+	/** The time ticks in minutes **/
+	private DoubleSeries mTime;
+	/** The normalized resistance values dR/R in percent **/
+	private DoubleSeries mNormalizedResistances;
+	/** Contains the highest resistance delta at each exposure level. **/
+	private DoubleSeries mMaxResponses;
+	/** Contains the concentration values in ppm */
+	private DoubleSeries mConcentrations;
+
+	/** The initial resistance as calculated by the average resistance from 45 - 60 min */
+	private double mInitialResistance;
+
+	/** Axis values **/
+	private double mResistanceAxis;
+	private double mMinResistance;
+	private double mMaxResistance;
+	private double mResistanceRange;
+	private double mConcentrationAxis;
+	private double mTimeAxis;
+
+	private String mGasName;
+
+	/** Sample offsets of each phase of a complete run **/
+	private PhaseIndex mPhaseIndex;
+	/** The baseline drift removed from a complete run, null if it wasn't removed **/
+	private BaselineDrift mBaselineDrift;
+	/** The features of each exposure of a complete run, empty in follow mode **/
+	private List<ExposureKinetics> mKinetics = Collections.emptyList();
+	private KineticsExtractor mKineticsExtractor;
+
+	/** Scratch buffer for selecting medians, reused by every phase and outlier pass **/
+	private double[] mScratch = new double[0];
+
+	/** Follow mode state, used when data is appended while the file is being written **/
+	private boolean mBaselineComplete;
+	private double mInitialResistanceSum;
+	private int mInitialResistanceValues;
+	private double mDataMinResistance = Double.POSITIVE_INFINITY;
+	private double mDataMaxResistance = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Creates a processor for a file that is still being written. Data is added with
+	 * {@link #append(SensorData)} as the file grows.
+	 *
+	 * @param concentration The gas name followed by the exposure concentrations.
+	 */
+	public SensorDataProcessor(String concentration) {
+		this(concentration, 0, false);
+	}
+
+	private SensorDataProcessor(String concentration, int capacity, boolean direct) {
+		mTime = DoubleSeries.allocate(capacity, direct);
+		mNormalizedResistances = DoubleSeries.allocate(capacity, direct);
+		mMaxResponses = DoubleSeries.allocate();
+		mConcentrations = DoubleSeries.allocate();
+		mMinResistance = Double.POSITIVE_INFINITY;
+		mMaxResistance = Double.NEGATIVE_INFINITY;
+		parseConcentrations(concentration);
+	}
+
+	/**
+	 * Analyzes a complete run. The resistances are normalized, cleaned up and measured by a
+	 * {@link ProcessingPipeline}, which fuses the steps into as few passes as it can. The
+	 * series of the result are stored outside of the heap if the sensor data is, in which
+	 * case the result has to be freed.
+	 *
+	 * @param sensorData The time (seconds) and resistance columns of the run.
+	 * @param concentration The gas name followed by the exposure concentrations.
+	 * @param options How the normalized data is cleaned up.
+	 * @return The normalized data, max responses, exposure kinetics and axis ranges of the
+	 * 			run.
+	 */
+	public static ProcessingResult process(SensorData sensorData, String concentration,
+			ProcessingOptions options) {
+		SensorDataProcessor processor = new SensorDataProcessor(concentration,
+				sensorData.size(), sensorData.isDirect());
+		processor.processData(sensorData);
+		processor.mPhaseIndex = new PhaseIndex(processor.mTime,
+				processor.mConcentrations.size());
+		processor.createPipeline(options).run(processor.mNormalizedResistances);
+		processor.mKinetics = processor.mKineticsExtractor.getKinetics();
+		processor.calculateAxisRange();
+		processor.mBaselineComplete = true;
+		return processor.getResult();
+	}
+
+	/**
+	 * Processes the samples that were appended to sensorData since the last call. Until
+	 * the baseline window (45 - 60 min) is complete the samples are only used to
+	 * calculate the initial resistance. Once it is complete the buffered samples are
+	 * normalized once, and from then on each new sample is normalized and checked against
+	 * the max response of its exposure as it arrives. Outlier removal, baseline drift
+	 * and smoothing need the whole run so they are not applied in follow mode.
+	 *
+	 * @param sensorData The data of the followed file, including the samples already
+	 * 			passed in by earlier calls.
+	 * @return The analysis of the data so far.
+	 * @throws FileException If the run is past the baseline window and there were no
+	 * 			samples in it to calculate the initial resistance from.
+	 */
+	public ProcessingResult append(SensorData sensorData) throws FileException {
+		int firstNewSample = mTime.size();
+		for (int i = firstNewSample; i < sensorData.size(); ++i) {
+			double timeMin = sensorData.getTime(i) / 60.0;
+			mTime.add(timeMin);
+			if (!mBaselineComplete) {
+				if (timeMin > DURATION_RESISTANCE && timeMin < DURATION_BASELINE) {
+					mInitialResistanceSum += sensorData.getResistance(i);
+					mInitialResistanceValues++;
+				} else if (timeMin >= DURATION_BASELINE) {
+					/** The window is over, so it won't get any more samples **/
+					if (mInitialResistanceValues == 0) {
+						throw (new FileException(ERROR_NO_BASELINE));
+					}
+					mInitialResistance = mInitialResistanceSum / mInitialResistanceValues;
+					mBaselineComplete = true;
+				}
+			}
+		}
+		if (!mBaselineComplete) {
+			return getResult();
+		}
+		for (int i = mNormalizedResistances.size(); i < mTime.size(); ++i) {
+			appendNormalizedResistance(mTime.get(i), sensorData.getResistance(i));
+		}
+		mMinResistance = mDataMinResistance;
+		mMaxResistance = mDataMaxResistance;
+		calculateAxisRange();
+		return getResult();
+	}
+
+	/**
+	 * Returns the analysis of the data processed so far. The series of the result are
+	 * shared with the processor, so they keep growing as more data is appended.
+	 */
+	public ProcessingResult getResult() {
+		return new ProcessingResult(mTime, mNormalizedResistances, mConcentrations,
+				mMaxResponses, mGasName, mInitialResistance, mBaselineComplete,
+				mResistanceAxis, mMinResistance, mMaxResistance, mConcentrationAxis,
+				mTimeAxis, mBaselineDrift, mKinetics);
+	}
+
+	/**
+	 * Normalizes a single resistance and updates the running axis values and the max
+	 * response of the exposure it falls in.
+	 */
+	private void appendNormalizedResistance(double time, double resistance) {
+		double normalizedResistance = (resistance - mInitialResistance) / 
+				mInitialResistance * 100;
+		mNormalizedResistances.add(normalizedResistance);
+		mDataMinResistance = Math.min(mDataMinResistance, normalizedResistance);
+		mDataMaxResistance = Math.max(mDataMaxResistance, normalizedResistance);
+		if (Math.abs(mResistanceAxis) < Math.abs(normalizedResistance)) {
+			mResistanceAxis = normalizedResistance;
+		}
+		
+		/** Each exposure starts one exposure/recovery set after the previous one **/
+		double exposureTime = time - DURATION_BASELINE;
+		if (exposureTime < 0) {
+			return;
+		}
+		int exposure = (int) (exposureTime / (DURATION_EXPOSURE + DURATION_RECOVERY));
+		if (exposure < mConcentrations.size() &&
+				exposureTime - exposure * (DURATION_EXPOSURE + DURATION_RECOVERY) <= DURATION_EXPOSURE &&
+				Math.abs(mMaxResponses.get(exposure)) < Math.abs(normalizedResistance)) {
+			mMaxResponses.set(exposure, normalizedResistance);
+		}
+	}
+	
+	/**
+	 * Processes the data into the format required. 
+	 * 	Converts time to minutes. 
+	 *	Copies the resistances for the {@link NormalizeStage} to normalize.
+	 * @param sensorData
+	 */
+	private void processData(SensorData sensorData) {
+		double numInitialResistanceValues = 0;
+		for (int i = 0; i < sensorData.size(); ++i) {
+			/** Convert time to minutes **/
+			double timeSec = sensorData.getTime(i);
+			double timeMin = timeSec / 60.0;
+			mTime.add(timeMin);
+
+			/** Calculate baseline resistance **/
+			double resistance = sensorData.getResistance(i);
+			if (timeMin > DURATION_RESISTANCE && timeMin < DURATION_BASELINE) {
+				mInitialResistance += resistance;
+				numInitialResistanceValues++;
+			}
+		}
+		mInitialResistance /= numInitialResistanceValues;
+		mNormalizedResistances.addAll(sensorData.getResistances());
+	}
+
+	/**
+	 * Builds the stages that normalize and clean up the resistances, ending with the stages
+	 * that find the max responses, the resistance range and the kinetics of each exposure.
+	 */
+	private ProcessingPipeline createPipeline(ProcessingOptions options) {
+		boolean vectorized = options.getVectorizedKernels();
+		ProcessingPipeline pipeline = new ProcessingPipeline();
+		pipeline.setFused(options.getFusedPipeline());
+		pipeline.add(new NormalizeStage(vectorized));
+		/** Without incremental passes every pass is a full stage of its own **/
+		boolean incremental = options.getIncrementalOutliers();
+		int stages = incremental ? Math.min(options.getOutlierRemoval(), 1) :
+				options.getOutlierRemoval();
+		int passes = incremental ? options.getOutlierRemoval() : 1;
+		for (int i = 0; i < stages; ++i) {
+			if (options.getOutlierMode() == OutlierMode.HAMPEL) {
+				pipeline.add(HampelFilter.createStage(options.getHampelWindow(),
+						options.getOutlierStdThreshold(), passes));
+			} else {
+				pipeline.add(new PhaseOutlierStage(options.getOutlierMode(),
+						options.getOutlierStdThreshold(), passes));
+			}
+		}
+		if (options.getBaselineDrift()) {
+			int size = mTime.size();
+			mBaselineDrift = new BaselineDrift(options.getDriftModel(), options.getDriftDegree(),
+					size > 0 ? mTime.get(0) : 0, size > 0 ? mTime.get(size - 1) : 0,
+					mConcentrations.size());
+			mBaselineDrift.setVectorized(vectorized);
+			pipeline.add(new BaselineDriftStage(mBaselineDrift));
+		}
+		if (options.getSmoothDataPeriod() > 0) {
+			ProcessingStage smoothing = DataSmoother.createStage(options.getSmoothingFilter(),
+					options.getSmoothDataPeriod(), vectorized);
+			if (smoothing != null) {
+				pipeline.add(smoothing);
+			}
+		}
+		pipeline.add(new AxisStage(vectorized));
+		mKineticsExtractor = new KineticsExtractor(mPhaseIndex, mTime);
+		pipeline.add(mKineticsExtractor);
+		return pipeline;
+	}
+	
+	/**
+	 * Parses the gas name and concentrations.
+	 * @param concentration The gas name followed by the exposure concentrations.
+	 */
+	private void parseConcentrations(String concentration) {
+		String concentrations[] = concentration.split(" ");
+		mGasName = concentrations[0];
+		for (int i = 1; i < concentrations.length; ++i) {
+			double ppm = Double.parseDouble(concentrations[i]);
+			mConcentrations.add(ppm);
+			/** Initialize the max Responses to 0. The values are then compared with the abs(delta) */
+			mMaxResponses.add(0.0);
+		}
+	}
+		
+	/**
+	 * Rounds the axis values off from the min and max normalized resistances.
+	 */
+	private void calculateAxisRange() {
+		mResistanceRange = mMaxResistance - mMinResistance;
+		mMaxResistance += mResistanceRange * 0.2;
+		mMinResistance -= mResistanceRange * 0.2;
+		mResistanceRange = mMaxResistance - mMinResistance;
+
+		boolean smallResistance = false;
+		if (mResistanceRange < 100) {
+			mMaxResistance *= 1000;
+			mMinResistance *= 1000;
+			mResistanceRange *= 1000;
+			smallResistance = true;
+		}
+		// Round resistance range to nearest multiple of 10
+		mResistanceRange = Math.floor(mResistanceRange);
+		int resistanceStep = (int) (mResistanceRange / RESISTANCE_AXIS_TICKS);
+		if (resistanceStep % RESISTANCE_AXIS_TICK_ROUNDOFF != 0) {
+			resistanceStep += RESISTANCE_AXIS_TICK_ROUNDOFF -
+					(resistanceStep % RESISTANCE_AXIS_TICK_ROUNDOFF);
+		}
+		mMaxResistance = Math.floor(mMaxResistance);
+		if (mMaxResistance % 5 != 0) {
+			mMaxResistance += 5 - (mMaxResistance % 5);
+		}
+		mMinResistance = mMaxResistance - resistanceStep * RESISTANCE_AXIS_TICKS;
+
+		if (smallResistance) {
+			mMaxResistance /= 1000;
+			mMinResistance /= 1000;
+		}
+		mResistanceRange = mMaxResistance - mMinResistance;
+
+		mConcentrationAxis = mConcentrations.get(mConcentrations.size() - 1) *
+				AXIS_CONCENTRATION_MARGIN; 
+
+		mTimeAxis = DURATION_BASELINE + mConcentrations.size() * 
+				(DURATION_EXPOSURE + DURATION_RECOVERY) + DURATION_END;
+
+		/** Normalize the time step to round up to the nearest 5 **/
+		int timeStep = (int) mTimeAxis / (TIME_AXIS_TICKS);
+		if (timeStep % TIME_AXIS_TICK_ROUNDOFF != 0) {
+			mTimeAxis += (TIME_AXIS_TICK_ROUNDOFF -
+					(timeStep % TIME_AXIS_TICK_ROUNDOFF)) * (TIME_AXIS_TICKS);
+		}
+	}
+	
+	/**
+	 * Finds the index-th smallest (1 based) of the first size values of the scratch buffer.
+	 * The scratch buffer is reordered.
+	 */
+	private double findMedian(int size, int index) {
+		if (index < 1 || index > size) {
+			return Double.NaN;
+		}
+		return MedianSelector.select(mScratch, 0, size, index - 1);
+	}
+	
+	/**
+	 * Copies the values into the scratch buffer, growing it if needed.
+	 */
+	private void fillScratch(DoubleSeries values) {
+		if (mScratch.length < values.size()) {
+			mScratch = new double[Math.max(values.size(), mScratch.length + (mScratch.length >> 1))];
+		}
+		values.get(0, mScratch, 0, values.size());
+	}
+
+	/**
+	 * Converts the raw resistances to the change from the initial resistance in percent.
+	 */
+	private class NormalizeStage extends ProcessingStage
+	{
+		private final boolean mVectorized;
+
+		public NormalizeStage(boolean vectorized) {
+			super(Kind.POINTWISE);
+			mVectorized = vectorized;
+		}
+
+		@Override
+		public void process(DoubleSeries values, int from, int to) {
+			double initialResistance = mInitialResistance;
+			if (mVectorized) {
+				NumericKernels.normalize(values, from, to, initialResistance);
+				return;
+			}
+			for (int i = from; i < to; ++i) {
+				/** Calculate normalized resistance **/
+				double resistance = values.get(i);
+				double normalizedResistance = (resistance - initialResistance) / 
+						initialResistance * 100;
+				values.set(i, normalizedResistance);
+			}
+		}
+	}
+
+	/**
+	 * Removes the outliers from the baseline, each exposure and recovery, and the end, over
+	 * a number of passes. A phase whose values didn't change in a pass would find the same
+	 * median, spread and outliers in the next one, so each pass only scans the phases that
+	 * changed in the pass before (and a phase whose first outliers copy a value that did),
+	 * and only those phases have their statistics found again. The median of each phase is
+	 * kept in a {@link MedianBand} and the sums behind the standard deviation are updated
+	 * as values change, so neither is found from the whole phase again unless the median
+	 * moves out of its band. The passes stop once one changes nothing.
+	 *
+	 * The statistics of the first pass are found as soon as the pass before the stage has
+	 * finished each phase. Every pass but the last runs when the stage is prepared, and the
+	 * last one in the stage's own pass.
+	 */
+	private class PhaseOutlierStage extends ProcessingStage
+	{
+		private final OutlierMode mMode;
+		private final double mStdThreshold;
+		private final int mPasses;
+		private final double[] mMedians;
+		/** The spread of each phase, NaN if its outliers can't be found **/
+		private final double[] mStds;
+		/**
+		 * The value the sums of each phase are centered on, its median when the sums were
+		 * first taken, so the variance about a later median doesn't lose precision
+		 */
+		private final double[] mCenters;
+		/** Sums of value - center and (value - center)^2 over each phase **/
+		private final double[] mSums;
+		private final double[] mSquareSums;
+		/** The values of each phase nearest its median, null once they are out of date **/
+		private final MedianBand[] mBands;
+		/** Phases to scan in this pass, with up to date statistics **/
+		private final boolean[] mDirty;
+		/** Phases that changed in this pass **/
+		private final boolean[] mChanged;
+		/** The first phase whose statistics haven't been found **/
+		private int mNextPhase;
+		/** The index of the last value changed in this pass **/
+		private int mLastChange;
+		/** The phase of the value being processed, and whether it is being scanned **/
+		private int mPhase;
+		private boolean mScanning;
+		/** The value before the one being processed, after it was processed **/
+		private double mPrevious;
+
+		/**
+		 * @param mode How far a value is from the median is measured.
+		 * @param stdThreshold The number of standard deviations allowed before considering
+		 * 			it an outlier.
+		 * @param passes The most passes to make.
+		 */
+		public PhaseOutlierStage(OutlierMode mode, double stdThreshold, int passes) {
+			super(Kind.GLOBAL);
+			mMode = mode;
+			mStdThreshold = stdThreshold;
+			mPasses = passes;
+			int phases = mPhaseIndex.getPhaseCount();
+			mMedians = new double[phases];
+			mStds = new double[phases];
+			mCenters = new double[phases];
+			mSums = new double[phases];
+			mSquareSums = new double[phases];
+			mDirty = new boolean[phases];
+			mChanged = new boolean[phases];
+			mBands = new MedianBand[phases];
+		}
+
+		@Override
+		public void accumulate(DoubleSeries values, int from, int to) {
+			while (mNextPhase < mStds.length && mPhaseIndex.getEnd(mNextPhase) <= to) {
+				mDirty[mNextPhase] = true;
+				findPeriodStatistics(values, mNextPhase++, true);
+			}
+		}
+
+		/**
+		 * Finds the median and spread of a phase.
+		 *
+		 * @param first Whether the statistics are being found for the first time, in which
+		 * 			case the sums behind the standard deviation are taken too.
+		 */
+		private void findPeriodStatistics(DoubleSeries values, int phase, boolean first) {
+			mStds[phase] = Double.NaN;
+			DoubleSeries periodData = values.slice(mPhaseIndex.getStart(phase),
+					mPhaseIndex.getEnd(phase));
+			int size = periodData.size();
+			if (size < 2) {
+				return;
+			}
+			double periodMedian;
+			if (mBands[phase] != null && mBands[phase].contains(size / 2 - 1)) {
+				periodMedian = mBands[phase].get(size / 2 - 1);
+			} else {
+				fillScratch(periodData);
+				periodMedian = findMedian(size, size / 2);
+				if (mPasses > 1 && mMode == OutlierMode.STANDARD_DEVIATION) {
+					if (mBands[phase] == null) {
+						mBands[phase] = new MedianBand(MEDIAN_BAND_HALF_WIDTH);
+					}
+					mBands[phase].reset(mScratch, size, size / 2 - 1);
+				}
+			}
+			double periodStd;
+			if (mMode == OutlierMode.MEDIAN_ABSOLUTE_DEVIATION) {
+				for (int i = 0; i < size; ++i) {
+					mScratch[i] = Math.abs(periodData.get(i) - periodMedian);
+				}
+				periodStd = findMedian(size, size / 2) * MAD_TO_STD;
+				if (periodStd == 0) {
+					/** Most of the period is a single value, there is no spread to measure **/
+					return;
+				}
+			} else {
+				double periodVariance;
+				if (first) {
+					double sum = 0;
+					periodVariance = 0;
+					for (int i = 0; i < size; ++i) {
+						double normalizedResistance = periodData.get(i);
+						sum += normalizedResistance - periodMedian;
+						periodVariance += Math.pow(normalizedResistance - periodMedian, 2);
+					}
+					mCenters[phase] = periodMedian;
+					mSums[phase] = sum;
+					mSquareSums[phase] = periodVariance;
+				} else {
+					/** sum((x - m)^2) from the sums about the center c, with d = m - c **/
+					double shift = periodMedian - mCenters[phase];
+					periodVariance = mSquareSums[phase] - 2 * shift * mSums[phase] +
+							size * shift * shift;
+				}
+				periodVariance /= (size - 1);
+				periodStd = Math.sqrt(periodVariance);
+			}
+			mMedians[phase] = periodMedian;
+			mStds[phase] = periodStd;
+		}
+
+		@Override
+		public void prepare(DoubleSeries values) {
+			for (int pass = 1; pass < mPasses; ++pass) {
+				beginPass();
+				double previousResistance = 0;
+				for (int phase = 0; phase < mStds.length; ++phase) {
+					int startIndex = mPhaseIndex.getStart(phase);
+					int stopIndex = mPhaseIndex.getEnd(phase);
+					if (startIndex == stopIndex) {
+						continue;
+					}
+					if (isScanned(phase)) {
+						previousResistance = scan(values, phase, startIndex, stopIndex,
+								previousResistance);
+					} else {
+						previousResistance = values.get(stopIndex - 1);
+					}
+				}
+				if (!endPass(values)) {
+					break;
+				}
+			}
+		}
+
+		private void beginPass() {
+			Arrays.fill(mChanged, false);
+			mLastChange = -2;
+		}
+
+		/**
+		 * Marks the phases that changed to be scanned in the next pass and finds their
+		 * statistics again.
+		 *
+		 * @return Whether any value changed in the pass.
+		 */
+		private boolean endPass(DoubleSeries values) {
+			boolean changed = false;
+			for (int phase = 0; phase < mStds.length; ++phase) {
+				mDirty[phase] = mChanged[phase];
+				if (mChanged[phase]) {
+					changed = true;
+					findPeriodStatistics(values, phase, false);
+				}
+			}
+			return changed;
+		}
+
+		/**
+		 * Whether a phase has to be scanned in this pass: its values changed in the last
+		 * pass, or the value before it just changed, which its first outliers would copy.
+		 */
+		private boolean isScanned(int phase) {
+			return mDirty[phase] || mLastChange == mPhaseIndex.getStart(phase) - 1;
+		}
+
+		/**
+		 * Replaces the outliers from index from to index to of a phase.
+		 *
+		 * @param previousResistance The value before from, after it was processed.
+		 * @return The value at to - 1, after it was processed.
+		 */
+		private double scan(DoubleSeries values, int phase, int from, int to,
+				double previousResistance) {
+			int last = values.size() - 1;
+			double periodMedian = mMedians[phase];
+			double periodStd = mStds[phase];
+			for (int i = from; i < to; ++i) {
+				double normalizedResistance = values.get(i);
+				double zScore = Math.abs((normalizedResistance - periodMedian) / periodStd);
+				if (zScore > mStdThreshold && i < last) {
+					double replacement;
+					if (i > 0) {
+						replacement = previousResistance;
+					} else {
+						replacement = values.get(i + 1);
+					}
+					if (Double.compare(replacement, normalizedResistance) != 0) {
+						values.set(i, replacement);
+						changeValue(phase, i, normalizedResistance, replacement);
+						normalizedResistance = replacement;
+					}
+				}
+				previousResistance = normalizedResistance;
+			}
+			return previousResistance;
+		}
+
+		private void changeValue(int phase, int index, double oldValue, double newValue) {
+			mChanged[phase] = true;
+			mLastChange = index;
+			double oldDeviation = oldValue - mCenters[phase];
+			double newDeviation = newValue - mCenters[phase];
+			mSums[phase] += newDeviation - oldDeviation;
+			mSquareSums[phase] += newDeviation * newDeviation - oldDeviation * oldDeviation;
+			if (mBands[phase] != null && !mBands[phase].replace(oldValue, newValue)) {
+				mBands[phase] = null;
+			}
+		}
+
+		@Override
+		public void begin(DoubleSeries values) {
+			beginPass();
+			mPhase = 0;
+			mScanning = isScanned(0);
+		}
+
+		@Override
+		public void process(DoubleSeries values, int from, int to) {
+			double previousResistance = mPrevious;
+			while (from < to) {
+				while (from >= mPhaseIndex.getEnd(mPhase)) {
+					mPhase++;
+					mScanning = isScanned(mPhase);
+				}
+				int stop = Math.min(to, mPhaseIndex.getEnd(mPhase));
+				if (mScanning) {
+					previousResistance = scan(values, mPhase, from, stop, previousResistance);
+				} else {
+					previousResistance = values.get(stop - 1);
+				}
+				from = stop;
+			}
+			mPrevious = previousResistance;
+		}
+	}
+
+	/**
+	 * Removes the baseline drift fitted to the baseline, recoveries and tail, leaving out
+	 * the exposures since they are the signal.
+	 */
+	private class BaselineDriftStage extends ProcessingStage
+	{
+		private final BaselineDrift mDrift;
+		/** The phase of the first value that hasn't been accumulated or corrected **/
+		private int mPhase;
+
+		public BaselineDriftStage(BaselineDrift drift) {
+			super(Kind.GLOBAL);
+			mDrift = drift;
+		}
+
+		@Override
+		public void accumulate(DoubleSeries values, int from, int to) {
+			while (from < to) {
+				while (from >= mPhaseIndex.getEnd(mPhase)) {
+					mPhase++;
+				}
+				int stop = Math.min(to, mPhaseIndex.getEnd(mPhase));
+				if (!mPhaseIndex.isExposure(mPhase)) {
+					mDrift.add(mTime, values, from, stop);
+				}
+				from = stop;
+			}
+		}
+
+		@Override
+		public void prepare(DoubleSeries values) {
+			mDrift.fit();
+		}
+
+		@Override
+		public void begin(DoubleSeries values) {
+			mPhase = 0;
+		}
+
+		@Override
+		public void process(DoubleSeries values, int from, int to) {
+			while (from < to) {
+				while (from >= mPhaseIndex.getEnd(mPhase)) {
+					mPhase++;
+				}
+				int stop = Math.min(to, mPhaseIndex.getEnd(mPhase));
+				mDrift.subtract(mTime, values, from, stop, !mPhaseIndex.isExposure(mPhase));
+				from = stop;
+			}
+		}
+	}
+
+	/**
+	 * Finds the most positive and most negative normalized resistances, and the max
+	 * response of each exposure period. Only reads the values.
+	 */
+	private class AxisStage extends ProcessingStage
+	{
+		private final boolean mVectorized;
+		/** The phase of the first value that hasn't been read **/
+		private int mPhase;
+		/** The smallest and largest value of a phase **/
+		private final double[] mRange = new double[2];
+
+		public AxisStage(boolean vectorized) {
+			super(Kind.POINTWISE);
+			mVectorized = vectorized;
+		}
+
+		@Override
+		public void begin(DoubleSeries values) {
+			mPhase = 0;
+		}
+
+		@Override
+		public void process(DoubleSeries values, int from, int to) {
+			double minResistance = mMinResistance;
+			double maxResistance = mMaxResistance;
+			double resistanceAxis = mResistanceAxis;
+			while (from < to) {
+				while (from >= mPhaseIndex.getEnd(mPhase)) {
+					mPhase++;
+				}
+				int stop = Math.min(to, mPhaseIndex.getEnd(mPhase));
+				int exposure = mPhaseIndex.getExposure(mPhase);
+				double periodMax = exposure >= 0 ? mMaxResponses.get(exposure) : 0;
+				if (mVectorized) {
+					/** Only look for the value furthest from 0 if it is a new furthest **/
+					mRange[0] = Double.POSITIVE_INFINITY;
+					mRange[1] = Double.NEGATIVE_INFINITY;
+					NumericKernels.findRange(values, from, stop, mRange);
+					if (mRange[0] < minResistance) {
+						minResistance = mRange[0];
+					}
+					if (mRange[1] > maxResistance) {
+						maxResistance = mRange[1];
+					}
+					double magnitude = Math.max(-mRange[0], mRange[1]);
+					if (Math.abs(resistanceAxis) < magnitude) {
+						resistanceAxis = NumericKernels.findFirstWithMagnitude(values, from, stop,
+								magnitude);
+					}
+					if (exposure >= 0 && Math.abs(periodMax) < magnitude) {
+						periodMax = NumericKernels.findFirstWithMagnitude(values, from, stop,
+								magnitude);
+					}
+				} else {
+					for (int i = from; i < stop; ++i) {
+						double normalizedResistance = values.get(i);
+						/** Get the most positive or most negative value **/
+						if (normalizedResistance < minResistance) {
+							minResistance = normalizedResistance;
+						}
+						if (normalizedResistance > maxResistance) {
+							maxResistance = normalizedResistance;
+						}
+						if (Math.abs(resistanceAxis) < Math.abs(normalizedResistance)) {
+							resistanceAxis = normalizedResistance;
+						}
+						/** Calculate the max response for each exposure period **/
+						if (exposure >= 0 &&
+								Math.abs(periodMax) < Math.abs(normalizedResistance)) {
+							periodMax = normalizedResistance;
+						}
+					}
+				}
+				if (exposure >= 0) {
+					mMaxResponses.set(exposure, periodMax);
+				}
+				from = stop;
+			}
+			mMinResistance = minResistance;
+			mMaxResistance = maxResistance;
+			mResistanceAxis = resistanceAxis;
+		}
+	}
+}
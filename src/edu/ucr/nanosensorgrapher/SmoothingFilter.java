@@ -0,0 +1,27 @@
+package edu.ucr.nanosensorgrapher;
+
+/**
+ * The filters {@link DataSmoother} can smooth the normalized data with.
+ */
+public enum SmoothingFilter
+{
+	/** Average of the last period samples **/
+	SIMPLE_MOVING_AVERAGE("Simple Moving Average"),
+	/** Exponentially weighted average with a smoothing factor of 2 / (period + 1) **/
+	EXPONENTIAL_MOVING_AVERAGE("Exponential Moving Average"),
+	/** Median of the period samples centered on each sample **/
+	MEDIAN("Median"),
+	/** Quadratic least squares fit over the period samples centered on each sample **/
+	SAVITZKY_GOLAY("Savitzky-Golay");
+
+	private final String mLabel;
+
+	private SmoothingFilter(String label) {
+		mLabel = label;
+	}
+
+	@Override
+	public String toString() {
+		return mLabel;
+	}
+}